@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.res.AssetManager;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * The compileStickerCatalog gradle task parses contents.json on its own, this checks that the contents.bin it wrote
+ * for the shipped contents.json holds the same packs as {@link ContentFileParser}.
+ */
+public class CompiledStickerCatalogParityTest {
+
+    @Test
+    public void compiledCatalogMatchesContentFileParser() throws IOException {
+        final AssetManager assetManager = InstrumentationRegistry.getInstrumentation().getTargetContext().getAssets();
+        final List<StickerPack> parsedStickerPacks;
+        try (InputStream contentsInputStream = assetManager.open(StickerContentProvider.CONTENT_FILE_NAME)) {
+            parsedStickerPacks = ContentFileParser.parseStickerPacks(contentsInputStream);
+        }
+        final CompiledStickerCatalog compiledStickerCatalog = CompiledStickerCatalog.open(assetManager);
+        assertNotNull(CompiledStickerCatalog.COMPILED_CATALOG_FILE_NAME + " is not in the assets", compiledStickerCatalog);
+
+        assertEquals(parsedStickerPacks.size(), compiledStickerCatalog.getPackCount());
+        for (int i = 0; i < parsedStickerPacks.size(); i++) {
+            final StickerPack expected = parsedStickerPacks.get(i);
+            final StickerPack actual = compiledStickerCatalog.readStickerPack(i);
+            assertEquals(i, compiledStickerCatalog.indexOf(expected.identifier));
+            assertEquals(expected.identifier, actual.identifier);
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.publisher, actual.publisher);
+            assertEquals(expected.trayImageFile, actual.trayImageFile);
+            assertEquals(expected.publisherEmail, actual.publisherEmail);
+            assertEquals(expected.publisherWebsite, actual.publisherWebsite);
+            assertEquals(expected.privacyPolicyWebsite, actual.privacyPolicyWebsite);
+            assertEquals(expected.licenseAgreementWebsite, actual.licenseAgreementWebsite);
+            assertEquals(expected.imageDataVersion, actual.imageDataVersion);
+            assertEquals(expected.avoidCache, actual.avoidCache);
+            assertEquals(expected.animatedStickerPack, actual.animatedStickerPack);
+            assertEquals(expected.androidPlayStoreLink, actual.androidPlayStoreLink);
+            assertEquals(expected.iosAppStoreLink, actual.iosAppStoreLink);
+
+            final List<Sticker> expectedStickers = expected.getStickers();
+            final List<Sticker> actualStickers = actual.getStickers();
+            assertEquals(expectedStickers.size(), actualStickers.size());
+            for (int j = 0; j < expectedStickers.size(); j++) {
+                assertEquals(expectedStickers.get(j).imageFileName, actualStickers.get(j).imageFileName);
+                assertEquals(expectedStickers.get(j).emojis, actualStickers.get(j).emojis);
+                assertEquals(expectedStickers.get(j).accessibilityText, actualStickers.get(j).accessibilityText);
+            }
+        }
+    }
+}
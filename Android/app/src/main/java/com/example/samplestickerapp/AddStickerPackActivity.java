@@ -11,6 +11,7 @@ package com.example.samplestickerapp;
 import android.app.Activity;
 import android.app.Dialog;
 import android.content.ActivityNotFoundException;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
@@ -25,37 +26,114 @@ import androidx.fragment.app.DialogFragment;
 public abstract class AddStickerPackActivity extends BaseActivity {
     private static final int ADD_PACK = 200;
     private static final String TAG = "AddStickerPackActivity";
+    private static final String STATE_PENDING_ADD_IDENTIFIER = "pending_add_identifier";
+    private String pendingAddIdentifier;
+    private TaskScheduler.Handle<WhitelistStatusService.Status> addStatusHandle;
+    private String resolvingAddIdentifier;
 
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            pendingAddIdentifier = savedInstanceState.getString(STATE_PENDING_ADD_IDENTIFIER);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_PENDING_ADD_IDENTIFIER, pendingAddIdentifier);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        //the user left, so the add intent should not be launched once the status resolves.
+        if (addStatusHandle != null) {
+            addStatusHandle.cancel();
+            finishResolvingAddStatus();
+        }
+    }
+
+    /**
+     * Adds the pack with the cached whitelist status, or resolves the status on a background thread first. While it
+     * resolves, {@link #onAddStickerPackResolving} is called so the screen can show that the tap was taken.
+     */
     protected void addStickerPackToWhatsApp(String identifier, String stickerPackName) {
-        try {
-            //if neither WhatsApp Consumer or WhatsApp Business is installed, then tell user to install the apps.
-            if (!WhitelistCheck.isWhatsAppConsumerAppInstalled(getPackageManager()) && !WhitelistCheck.isWhatsAppSmbAppInstalled(getPackageManager())) {
-                Toast.makeText(this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
-                return;
+        if (addStatusHandle != null) {
+            //a status is already resolving, the taps until it is done are ignored.
+            return;
+        }
+        final WhitelistStatusService.Status cachedStatus = WhitelistStatusService.getInstance().getCachedStatus(identifier);
+        if (cachedStatus != null) {
+            addStickerPackToWhatsApp(identifier, stickerPackName, cachedStatus);
+            return;
+        }
+        final Context context = getApplicationContext();
+        resolvingAddIdentifier = identifier;
+        onAddStickerPackResolving(identifier, true);
+        addStatusHandle = TaskScheduler.getInstance().submit(TaskScheduler.Lane.IPC, getWhitelistCheckKey(identifier), cancellationToken -> WhitelistStatusService.getInstance().getStatus(context, identifier), new TaskScheduler.Callback<WhitelistStatusService.Status>() {
+            @Override
+            public void onResult(WhitelistStatusService.Status status) {
+                finishResolvingAddStatus();
+                addStickerPackToWhatsApp(identifier, stickerPackName, status);
             }
-            final boolean stickerPackWhitelistedInWhatsAppConsumer = WhitelistCheck.isStickerPackWhitelistedInWhatsAppConsumer(this, identifier);
-            final boolean stickerPackWhitelistedInWhatsAppSmb = WhitelistCheck.isStickerPackWhitelistedInWhatsAppSmb(this, identifier);
-            if (!stickerPackWhitelistedInWhatsAppConsumer && !stickerPackWhitelistedInWhatsAppSmb) {
-                //ask users which app to add the pack to.
-                launchIntentToAddPackToChooser(identifier, stickerPackName);
-            } else if (!stickerPackWhitelistedInWhatsAppConsumer) {
-                launchIntentToAddPackToSpecificPackage(identifier, stickerPackName, WhitelistCheck.CONSUMER_WHATSAPP_PACKAGE_NAME);
-            } else if (!stickerPackWhitelistedInWhatsAppSmb) {
-                launchIntentToAddPackToSpecificPackage(identifier, stickerPackName, WhitelistCheck.SMB_WHATSAPP_PACKAGE_NAME);
-            } else {
-                Toast.makeText(this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
+
+            @Override
+            public void onError(@NonNull Exception exception) {
+                finishResolvingAddStatus();
+                Log.e(TAG, "error adding sticker pack to WhatsApp", exception);
+                Toast.makeText(AddStickerPackActivity.this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
             }
-        } catch (Exception e) {
-            Log.e(TAG, "error adding sticker pack to WhatsApp", e);
-            Toast.makeText(this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
+        });
+    }
+
+    /**
+     * Called when the whitelist status of a pack the user wants to add starts and stops resolving.
+     */
+    protected void onAddStickerPackResolving(@NonNull String identifier, boolean resolving) {
+    }
+
+    /**
+     * @return the key of the whitelist status jobs of a pack, so the add flow and the screens share a running query.
+     */
+    @NonNull
+    static String getWhitelistCheckKey(@NonNull String identifier) {
+        return "whitelist_check/" + identifier;
+    }
+
+    private void finishResolvingAddStatus() {
+        final String identifier = resolvingAddIdentifier;
+        addStatusHandle = null;
+        resolvingAddIdentifier = null;
+        if (identifier != null) {
+            onAddStickerPackResolving(identifier, false);
         }
+    }
 
+    private void addStickerPackToWhatsApp(String identifier, String stickerPackName, @NonNull WhitelistStatusService.Status status) {
+        //if neither WhatsApp Consumer or WhatsApp Business is installed, then tell user to install the apps.
+        if (!status.consumerAppInstalled && !status.smbAppInstalled) {
+            Toast.makeText(this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (!status.whitelistedInConsumerApp && !status.whitelistedInSmbApp) {
+            //ask users which app to add the pack to.
+            launchIntentToAddPackToChooser(identifier, stickerPackName);
+        } else if (!status.whitelistedInConsumerApp) {
+            launchIntentToAddPackToSpecificPackage(identifier, stickerPackName, WhitelistCheck.CONSUMER_WHATSAPP_PACKAGE_NAME);
+        } else if (!status.whitelistedInSmbApp) {
+            launchIntentToAddPackToSpecificPackage(identifier, stickerPackName, WhitelistCheck.SMB_WHATSAPP_PACKAGE_NAME);
+        } else {
+            Toast.makeText(this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
+        }
     }
 
     private void launchIntentToAddPackToSpecificPackage(String identifier, String stickerPackName, String whatsappPackageName) {
         Intent intent = createIntentToAddStickerPack(identifier, stickerPackName);
         intent.setPackage(whatsappPackageName);
         try {
+            pendingAddIdentifier = identifier;
             startActivityForResult(intent, ADD_PACK);
         } catch (ActivityNotFoundException e) {
             Toast.makeText(this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
@@ -66,6 +144,7 @@ public abstract class AddStickerPackActivity extends BaseActivity {
     private void launchIntentToAddPackToChooser(String identifier, String stickerPackName) {
         Intent intent = createIntentToAddStickerPack(identifier, stickerPackName);
         try {
+            pendingAddIdentifier = identifier;
             startActivityForResult(Intent.createChooser(intent, getString(R.string.add_to_whatsapp)), ADD_PACK);
         } catch (ActivityNotFoundException e) {
             Toast.makeText(this, R.string.add_pack_fail_prompt_update_whatsapp, Toast.LENGTH_LONG).show();
@@ -86,6 +165,13 @@ public abstract class AddStickerPackActivity extends BaseActivity {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == ADD_PACK) {
+            //whatever the result, the whitelist status of the pack may have changed.
+            if (pendingAddIdentifier != null) {
+                WhitelistStatusService.getInstance().invalidate(pendingAddIdentifier);
+                pendingAddIdentifier = null;
+            } else {
+                WhitelistStatusService.getInstance().invalidateAll();
+            }
             if (resultCode == Activity.RESULT_CANCELED) {
                 if (data != null) {
                     final String validationError = data.getStringExtra("validation_error");
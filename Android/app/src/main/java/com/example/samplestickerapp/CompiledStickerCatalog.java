@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the binary catalog that the compileStickerCatalog gradle task generates from contents.json. The file is
+ * memory mapped, and strings and packs are only decoded when they are asked for. Packs are found by identifier through
+ * a hash index written at build time, so opening the catalog does not read any identifier.
+ * <p>
+ * Layout, all integers are big endian:
+ * <pre>
+ * header:        magic, version, string count, pack count, sticker count, android play store link, ios app store link,
+ *                string offsets position, pack table position, sticker table position, string data position,
+ *                identifier index position, identifier index slot count
+ * string offsets: (string count + 1) offsets into the string data
+ * pack table:    identifier, name, publisher, tray image file, publisher email, publisher website,
+ *                privacy policy website, license agreement website, image data version, flags, first sticker, sticker count
+ * sticker table: image file, emojis joined with ",", accessibility text, file size in bytes or -1 if unknown
+ * identifier index: open addressing table with a power of two slot count, each slot holds a pack index or -1 if empty.
+ *                A pack starts probing at {@link #slotOf} of its identifier and moves to the next slot on collision.
+ *                Only the first pack of a duplicated identifier is indexed.
+ * string data:   UTF-8 bytes
+ * </pre>
+ * String fields hold an index in the string table, or -1 for null.
+ */
+final class CompiledStickerCatalog implements StickerCatalog.Source {
+    static final String COMPILED_CATALOG_FILE_NAME = "contents.bin";
+
+    private static final int MAGIC = 0x57534354; //"WSCT"
+    private static final int VERSION = 3;
+    private static final int HEADER_INTS = 13;
+    private static final int PACK_RECORD_INTS = 12;
+    private static final int STICKER_RECORD_INTS = 4;
+    private static final int INT_BYTES = 4;
+    private static final int NO_STRING = -1;
+    private static final int EMPTY_SLOT = -1;
+
+    private static final int FLAG_AVOID_CACHE = 1;
+    private static final int FLAG_ANIMATED_STICKER_PACK = 1 << 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @NonNull
+    private final ByteBuffer buffer;
+    @NonNull
+    private final String[] strings;
+    private final int stringCount;
+    private final int packCount;
+    private final int stickerCount;
+    private final int androidPlayStoreLink;
+    private final int iosAppStoreLink;
+    private final int stringOffsetsPosition;
+    private final int packTablePosition;
+    private final int stickerTablePosition;
+    private final int stringDataPosition;
+    private final int identifierIndexPosition;
+    private final int identifierIndexSlotCount;
+
+    private CompiledStickerCatalog(@NonNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_INTS * INT_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException(COMPILED_CATALOG_FILE_NAME + " is not a compiled sticker catalog");
+        }
+        final int version = buffer.getInt(INT_BYTES);
+        if (version != VERSION) {
+            throw new IllegalStateException(COMPILED_CATALOG_FILE_NAME + " version " + version + " is not supported, expected " + VERSION);
+        }
+        stringCount = buffer.getInt(2 * INT_BYTES);
+        packCount = buffer.getInt(3 * INT_BYTES);
+        stickerCount = buffer.getInt(4 * INT_BYTES);
+        androidPlayStoreLink = buffer.getInt(5 * INT_BYTES);
+        iosAppStoreLink = buffer.getInt(6 * INT_BYTES);
+        stringOffsetsPosition = buffer.getInt(7 * INT_BYTES);
+        packTablePosition = buffer.getInt(8 * INT_BYTES);
+        stickerTablePosition = buffer.getInt(9 * INT_BYTES);
+        stringDataPosition = buffer.getInt(10 * INT_BYTES);
+        identifierIndexPosition = buffer.getInt(11 * INT_BYTES);
+        identifierIndexSlotCount = buffer.getInt(12 * INT_BYTES);
+        if (packCount <= 0) {
+            throw new IllegalStateException("sticker pack list cannot be empty");
+        }
+        //a power of two with at least one empty slot, so that probing always ends.
+        if (identifierIndexSlotCount <= packCount || (identifierIndexSlotCount & (identifierIndexSlotCount - 1)) != 0
+                || identifierIndexPosition + identifierIndexSlotCount * INT_BYTES > buffer.capacity()) {
+            throw new IllegalStateException(COMPILED_CATALOG_FILE_NAME + " has an invalid identifier index");
+        }
+        if (stringDataPosition + stringOffset(stringCount) > buffer.capacity()) {
+            throw new IllegalStateException(COMPILED_CATALOG_FILE_NAME + " is truncated");
+        }
+        strings = new String[stringCount];
+    }
+
+    /**
+     * @return the compiled catalog, or null if the app was built without one.
+     */
+    @Nullable
+    static CompiledStickerCatalog open(@NonNull AssetManager assetManager) throws IOException {
+        final AssetFileDescriptor assetFileDescriptor;
+        try {
+            assetFileDescriptor = assetManager.openFd(COMPILED_CATALOG_FILE_NAME);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try (FileInputStream inputStream = assetFileDescriptor.createInputStream();
+             FileChannel channel = inputStream.getChannel()) {
+            //the mapping stays valid after the channel is closed.
+            return new CompiledStickerCatalog(channel.map(FileChannel.MapMode.READ_ONLY, assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength()));
+        } finally {
+            assetFileDescriptor.close();
+        }
+    }
+
+    @Override
+    public int getPackCount() {
+        return packCount;
+    }
+
+    @Override
+    public int indexOf(@NonNull String identifier) {
+        final int mask = identifierIndexSlotCount - 1;
+        for (int slot = slotOf(identifier, mask), probes = 0; probes < identifierIndexSlotCount; slot = (slot + 1) & mask, probes++) {
+            final int packIndex = buffer.getInt(identifierIndexPosition + slot * INT_BYTES);
+            if (packIndex == EMPTY_SLOT) {
+                return -1;
+            }
+            if (identifier.equals(getRequiredString(packField(packIndex, 0)))) {
+                return packIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The first slot probed for the identifier, the compileStickerCatalog gradle task computes it the same way.
+     */
+    static int slotOf(@NonNull String identifier, int mask) {
+        final int hash = identifier.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @NonNull
+    @Override
+    public StickerPack readStickerPack(int index) {
+        final StickerPack stickerPack = new StickerPack(
+                getRequiredString(packField(index, 0)),
+                getRequiredString(packField(index, 1)),
+                getRequiredString(packField(index, 2)),
+                getRequiredString(packField(index, 3)),
+                getString(packField(index, 4)),
+                getString(packField(index, 5)),
+                getString(packField(index, 6)),
+                getString(packField(index, 7)),
+                getRequiredString(packField(index, 8)),
+                (packField(index, 9) & FLAG_AVOID_CACHE) != 0,
+                (packField(index, 9) & FLAG_ANIMATED_STICKER_PACK) != 0);
+        final int firstSticker = packField(index, 10);
+        final int packStickerCount = packField(index, 11);
+        if (firstSticker < 0 || packStickerCount < 0 || firstSticker + packStickerCount > stickerCount) {
+            throw new IllegalStateException(COMPILED_CATALOG_FILE_NAME + " has invalid sticker range for pack: " + stickerPack.identifier);
+        }
+        final List<Sticker> stickers = new ArrayList<>(packStickerCount);
+        for (int i = firstSticker; i < firstSticker + packStickerCount; i++) {
+            final String emojisConcatenated = getRequiredString(stickerField(i, 1));
+            final List<String> emojis = TextUtils.isEmpty(emojisConcatenated) ? new ArrayList<>() : Arrays.asList(emojisConcatenated.split(","));
+            final Sticker sticker = new Sticker(getRequiredString(stickerField(i, 0)), emojis, getString(stickerField(i, 2)));
+            final int fileSize = stickerField(i, 3);
+            if (fileSize >= 0) {
+                sticker.setSize(fileSize);
+            }
+            stickers.add(sticker);
+        }
+        stickerPack.setStickers(stickers);
+        stickerPack.setAndroidPlayStoreLink(getString(androidPlayStoreLink));
+        stickerPack.setIosAppStoreLink(getString(iosAppStoreLink));
+        return stickerPack;
+    }
+
+    private int packField(int packIndex, int field) {
+        if (packIndex < 0 || packIndex >= packCount) {
+            throw new IndexOutOfBoundsException("pack index " + packIndex + ", pack count " + packCount);
+        }
+        return buffer.getInt(packTablePosition + (packIndex * PACK_RECORD_INTS + field) * INT_BYTES);
+    }
+
+    private int stickerField(int stickerIndex, int field) {
+        return buffer.getInt(stickerTablePosition + (stickerIndex * STICKER_RECORD_INTS + field) * INT_BYTES);
+    }
+
+    private int stringOffset(int stringIndex) {
+        return buffer.getInt(stringOffsetsPosition + stringIndex * INT_BYTES);
+    }
+
+    @NonNull
+    private String getRequiredString(int stringIndex) {
+        final String string = getString(stringIndex);
+        if (string == null) {
+            throw new IllegalStateException(COMPILED_CATALOG_FILE_NAME + " is missing a required string");
+        }
+        return string;
+    }
+
+    @Nullable
+    private String getString(int stringIndex) {
+        if (stringIndex == NO_STRING) {
+            return null;
+        }
+        if (stringIndex < 0 || stringIndex >= stringCount) {
+            throw new IllegalStateException(COMPILED_CATALOG_FILE_NAME + " has invalid string index: " + stringIndex);
+        }
+        //racing threads decode the same immutable value, so no locking is needed.
+        String string = strings[stringIndex];
+        if (string == null) {
+            final int start = stringOffset(stringIndex);
+            final byte[] bytes = new byte[stringOffset(stringIndex + 1) - start];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(stringDataPosition + start);
+            view.get(bytes);
+            string = new String(bytes, UTF_8);
+            strings[stringIndex] = string;
+        }
+        return string;
+    }
+}
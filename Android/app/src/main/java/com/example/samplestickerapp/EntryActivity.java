@@ -8,23 +8,21 @@
 
 package com.example.samplestickerapp;
 
-import android.content.Context;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
-import android.util.Pair;
 import android.view.View;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.List;
 
-public class EntryActivity extends BaseActivity {
+public class EntryActivity extends BaseActivity implements StickerPackLoadPipeline.Listener {
     private View progressBar;
-    private LoadListAsyncTask loadListAsyncTask;
+    private boolean stickerPackShown;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -35,11 +33,41 @@ public class EntryActivity extends BaseActivity {
             getSupportActionBar().hide();
         }
         progressBar = findViewById(R.id.entry_activity_progress);
-        loadListAsyncTask = new LoadListAsyncTask(this);
-        loadListAsyncTask.execute();
+        final StickerPackLoadPipeline stickerPackLoadPipeline = StickerPackLoadPipeline.getInstance();
+        stickerPackLoadPipeline.addListener(this);
+        stickerPackLoadPipeline.start(this);
+    }
+
+    @Override
+    public void onStickerPacksFetched(@NonNull List<StickerPack> stickerPackList) {
+        //the list screen shows the packs while they are validated, a single pack is only shown once it is valid.
+        if (stickerPackList.size() > 1) {
+            showStickerPack(new ArrayList<>(stickerPackList));
+        }
+    }
+
+    @Override
+    public void onStickerPackValidated(int index, @NonNull StickerPack stickerPack) {
+        if (stickerPackShown) {
+            return;
+        }
+        if (stickerPack.isValid()) {
+            final ArrayList<StickerPack> stickerPackList = new ArrayList<>();
+            stickerPackList.add(stickerPack);
+            showStickerPack(stickerPackList);
+        } else {
+            showErrorMessage(String.valueOf(stickerPack.getValidationError()));
+        }
+    }
+
+    @Override
+    public void onLoadFailed(@NonNull String errorMessage) {
+        showErrorMessage(errorMessage);
     }
 
     private void showStickerPack(ArrayList<StickerPack> stickerPackList) {
+        stickerPackShown = true;
+        StickerPackLoadPipeline.getInstance().removeListener(this);
         progressBar.setVisibility(View.GONE);
         if (stickerPackList.size() > 1) {
             final Intent intent = new Intent(this, StickerPackListActivity.class);
@@ -67,52 +95,6 @@ public class EntryActivity extends BaseActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (loadListAsyncTask != null && !loadListAsyncTask.isCancelled()) {
-            loadListAsyncTask.cancel(true);
-        }
-    }
-
-    static class LoadListAsyncTask extends AsyncTask<Void, Void, Pair<String, ArrayList<StickerPack>>> {
-        private final WeakReference<EntryActivity> contextWeakReference;
-
-        LoadListAsyncTask(EntryActivity activity) {
-            this.contextWeakReference = new WeakReference<>(activity);
-        }
-
-        @Override
-        protected Pair<String, ArrayList<StickerPack>> doInBackground(Void... voids) {
-            ArrayList<StickerPack> stickerPackList;
-            try {
-                final Context context = contextWeakReference.get();
-                if (context != null) {
-                    stickerPackList = StickerPackLoader.fetchStickerPacks(context);
-                    if (stickerPackList.size() == 0) {
-                        return new Pair<>("could not find any packs", null);
-                    }
-                    for (StickerPack stickerPack : stickerPackList) {
-                        StickerPackValidator.verifyStickerPackValidity(context, stickerPack);
-                    }
-                    return new Pair<>(null, stickerPackList);
-                } else {
-                    return new Pair<>("could not fetch sticker packs", null);
-                }
-            } catch (Exception e) {
-                Log.e("EntryActivity", "error fetching sticker packs", e);
-                return new Pair<>(e.getMessage(), null);
-            }
-        }
-
-        @Override
-        protected void onPostExecute(Pair<String, ArrayList<StickerPack>> stringListPair) {
-
-            final EntryActivity entryActivity = contextWeakReference.get();
-            if (entryActivity != null) {
-                if (stringListPair.first != null) {
-                    entryActivity.showErrorMessage(stringListPair.first);
-                } else {
-                    entryActivity.showStickerPack(stringListPair.second);
-                }
-            }
-        }
+        StickerPackLoadPipeline.getInstance().removeListener(this);
     }
 }
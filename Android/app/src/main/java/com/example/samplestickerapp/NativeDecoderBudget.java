@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+/**
+ * Limits how many native image decoders can be live at once, and how many bytes of native memory they can hold
+ * together. Callers block in {@link #acquire(long)} until the decoder fits in the budget. A single decoder bigger than
+ * the whole budget is still let through when no other decoder is live, so it cannot wait forever.
+ */
+final class NativeDecoderBudget {
+    private final int maxLiveDecoders;
+    private final long maxBytes;
+
+    private int liveDecoders;
+    private long bytesInUse;
+    private int peakLiveDecoders;
+    private long peakBytesInUse;
+    private long decoderCount;
+
+    NativeDecoderBudget(int maxLiveDecoders, long maxBytes) {
+        if (maxLiveDecoders <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("budget should be positive, max live decoders: " + maxLiveDecoders + ", max bytes: " + maxBytes);
+        }
+        this.maxLiveDecoders = maxLiveDecoders;
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized void acquire(long bytes) throws InterruptedException {
+        while (liveDecoders >= maxLiveDecoders || (liveDecoders > 0 && bytesInUse + bytes > maxBytes)) {
+            wait();
+        }
+        liveDecoders++;
+        bytesInUse += bytes;
+        decoderCount++;
+        peakLiveDecoders = Math.max(peakLiveDecoders, liveDecoders);
+        peakBytesInUse = Math.max(peakBytesInUse, bytesInUse);
+    }
+
+    synchronized void release(long bytes) {
+        liveDecoders--;
+        bytesInUse -= bytes;
+        notifyAll();
+    }
+
+    synchronized long getBytesInUse() {
+        return bytesInUse;
+    }
+
+    synchronized long getPeakBytesInUse() {
+        return peakBytesInUse;
+    }
+
+    synchronized int getPeakLiveDecoders() {
+        return peakLiveDecoders;
+    }
+
+    /**
+     * @return how many decoders were created since the budget was created.
+     */
+    synchronized long getDecoderCount() {
+        return decoderCount;
+    }
+}
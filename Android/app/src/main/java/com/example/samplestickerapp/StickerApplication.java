@@ -9,14 +9,26 @@
 package com.example.samplestickerapp;
 
 import android.app.Application;
+import android.util.Log;
 
 import com.facebook.drawee.backends.pipeline.Fresco;
 
 public class StickerApplication extends Application {
+    private static final String TAG = "StickerApplication";
 
     @Override
     public void onCreate() {
         super.onCreate();
-        Fresco.initialize(this);
+        Fresco.initialize(this, StickerImagePipelineConfig.build(this));
+        WhitelistStatusService.getInstance().registerPackageReceiver(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (BuildConfig.DEBUG) {
+            //the cache stats at the time the system asks for memory, to tune the cache sizes.
+            Log.d(TAG, "trim memory level " + level + ", " + StickerImageCacheStats.getInstance());
+        }
     }
 }
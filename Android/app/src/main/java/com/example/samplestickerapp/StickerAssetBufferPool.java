@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of the scratch arrays used to stream sticker assets whose length is unknown. There are two sizes, the static
+ * and the animated sticker file limits, so a valid sticker always fits in one array. At most
+ * {@link #MAX_POOLED_BUFFERS_PER_SIZE} arrays of each size are kept, bigger requests are allocated and not pooled.
+ */
+final class StickerAssetBufferPool {
+    static final int SMALL_BUFFER_SIZE = (int) (StickerPackValidator.STATIC_STICKER_FILE_LIMIT_KB * StickerPackValidator.KB_IN_BYTES);
+    static final int LARGE_BUFFER_SIZE = (int) (StickerPackValidator.ANIMATED_STICKER_FILE_LIMIT_KB * StickerPackValidator.KB_IN_BYTES);
+    private static final int MAX_POOLED_BUFFERS_PER_SIZE = 4;
+
+    private static final StickerAssetBufferPool INSTANCE = new StickerAssetBufferPool();
+
+    private final ArrayDeque<byte[]> smallBuffers = new ArrayDeque<>(MAX_POOLED_BUFFERS_PER_SIZE);
+    private final ArrayDeque<byte[]> largeBuffers = new ArrayDeque<>(MAX_POOLED_BUFFERS_PER_SIZE);
+
+    private long hitCount;
+    private long missCount;
+    private long bytesInUse;
+    private long peakBytesInUse;
+
+    @NonNull
+    static StickerAssetBufferPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return an array of at least the minimum size, its content is undefined. It should be given back with
+     * {@link #release(byte[])}.
+     */
+    @NonNull
+    synchronized byte[] acquire(int minimumSize) {
+        final ArrayDeque<byte[]> buffers = getBuffers(minimumSize);
+        byte[] buffer = buffers == null ? null : buffers.pollFirst();
+        if (buffer != null) {
+            hitCount++;
+        } else {
+            missCount++;
+            buffer = new byte[buffers == smallBuffers ? SMALL_BUFFER_SIZE : Math.max(minimumSize, LARGE_BUFFER_SIZE)];
+        }
+        bytesInUse += buffer.length;
+        peakBytesInUse = Math.max(peakBytesInUse, bytesInUse);
+        return buffer;
+    }
+
+    synchronized void release(@NonNull byte[] buffer) {
+        bytesInUse -= buffer.length;
+        final ArrayDeque<byte[]> buffers = buffer.length == SMALL_BUFFER_SIZE ? smallBuffers : buffer.length == LARGE_BUFFER_SIZE ? largeBuffers : null;
+        if (buffers != null && buffers.size() < MAX_POOLED_BUFFERS_PER_SIZE) {
+            buffers.addFirst(buffer);
+        }
+    }
+
+    /**
+     * @return the pooled arrays that fit the size, or null if it is bigger than the largest pooled array.
+     */
+    private ArrayDeque<byte[]> getBuffers(int minimumSize) {
+        if (minimumSize <= SMALL_BUFFER_SIZE) {
+            return smallBuffers;
+        }
+        return minimumSize <= LARGE_BUFFER_SIZE ? largeBuffers : null;
+    }
+
+    /**
+     * @return how many times an array was taken from the pool.
+     */
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return how many times an array had to be allocated.
+     */
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getBytesInUse() {
+        return bytesInUse;
+    }
+
+    synchronized long getPeakBytesInUse() {
+        return peakBytesInUse;
+    }
+}
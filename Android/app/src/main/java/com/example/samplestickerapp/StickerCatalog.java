@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable, hash-indexed view of the sticker packs declared in contents.json. Built once after parsing so that the
+ * content provider can resolve packs and asset files in constant time instead of scanning the whole list.
+ * Packs are only materialized from the {@link Source} the first time they are looked up, and creating the catalog
+ * does not read any pack.
+ */
+final class StickerCatalog {
+
+    /**
+     * Where the packs of the catalog come from, either the parsed contents.json or the compiled binary catalog.
+     */
+    interface Source {
+        int getPackCount();
+
+        /**
+         * @return the index of the first pack with the identifier, or -1 if there is none.
+         */
+        int indexOf(@NonNull String identifier);
+
+        @NonNull
+        StickerPack readStickerPack(int index);
+    }
+
+    @NonNull
+    private final Source source;
+    @NonNull
+    private final AtomicReferenceArray<Entry> entries;
+    @NonNull
+    private final List<StickerPack> stickerPackList;
+
+    private StickerCatalog(@NonNull Source source) {
+        this.source = source;
+        this.entries = new AtomicReferenceArray<>(source.getPackCount());
+        this.stickerPackList = new AbstractList<StickerPack>() {
+            @Override
+            public StickerPack get(int index) {
+                return getEntry(index).stickerPack;
+            }
+
+            @Override
+            public int size() {
+                return entries.length();
+            }
+        };
+    }
+
+    @NonNull
+    static StickerCatalog fromStickerPacks(@NonNull List<StickerPack> stickerPackList) {
+        return new StickerCatalog(new ListSource(stickerPackList));
+    }
+
+    @NonNull
+    static StickerCatalog fromSource(@NonNull Source source) {
+        return new StickerCatalog(source);
+    }
+
+    @NonNull
+    List<StickerPack> getStickerPackList() {
+        return stickerPackList;
+    }
+
+    @Nullable
+    StickerPack getStickerPack(@NonNull String identifier) {
+        final Entry entry = findEntry(identifier);
+        return entry == null ? null : entry.stickerPack;
+    }
+
+    @NonNull
+    List<Sticker> getStickers(@NonNull String identifier) {
+        final StickerPack stickerPack = getStickerPack(identifier);
+        return stickerPack == null ? Collections.emptyList() : stickerPack.getStickers();
+    }
+
+    /**
+     * @return the emojis of each sticker of the pack joined with ",", in sticker order. They are joined once when the
+     * pack is loaded instead of on every query.
+     */
+    @NonNull
+    String[] getJoinedEmojis(@NonNull String identifier) {
+        final Entry entry = findEntry(identifier);
+        return entry == null ? new String[0] : entry.joinedEmojis;
+    }
+
+    /**
+     * @return true if the file is either the tray image or one of the stickers of the pack.
+     */
+    boolean containsAsset(@NonNull String identifier, @NonNull String fileName) {
+        final Entry entry = findEntry(identifier);
+        return entry != null && (entry.isTrayImage(fileName) || entry.stickersByFileName.containsKey(fileName));
+    }
+
+    boolean isTrayImage(@NonNull String identifier, @NonNull String fileName) {
+        final Entry entry = findEntry(identifier);
+        return entry != null && entry.isTrayImage(fileName);
+    }
+
+    @Nullable
+    Sticker getSticker(@NonNull String identifier, @NonNull String fileName) {
+        final Entry entry = findEntry(identifier);
+        return entry == null ? null : entry.stickersByFileName.get(fileName);
+    }
+
+    @Nullable
+    private Entry findEntry(@NonNull String identifier) {
+        final int index = source.indexOf(identifier);
+        return index < 0 ? null : getEntry(index);
+    }
+
+    @NonNull
+    private Entry getEntry(int index) {
+        Entry entry = entries.get(index);
+        if (entry == null) {
+            entries.compareAndSet(index, null, new Entry(source.readStickerPack(index)));
+            entry = entries.get(index);
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+        @NonNull
+        final StickerPack stickerPack;
+        @NonNull
+        final Map<String, Sticker> stickersByFileName;
+        @NonNull
+        final String[] joinedEmojis;
+
+        Entry(@NonNull StickerPack stickerPack) {
+            this.stickerPack = stickerPack;
+            final List<Sticker> stickers = stickerPack.getStickers();
+            this.stickersByFileName = new HashMap<>(stickers.size() * 2);
+            this.joinedEmojis = new String[stickers.size()];
+            for (int i = 0; i < stickers.size(); i++) {
+                final Sticker sticker = stickers.get(i);
+                stickersByFileName.put(sticker.imageFileName, sticker);
+                joinedEmojis[i] = TextUtils.join(",", sticker.emojis);
+            }
+        }
+
+        boolean isTrayImage(@NonNull String fileName) {
+            return fileName.equals(stickerPack.trayImageFile);
+        }
+    }
+
+    private static final class ListSource implements Source {
+        @NonNull
+        private final List<StickerPack> stickerPackList;
+        @NonNull
+        private final Map<String, Integer> indexByIdentifier;
+
+        ListSource(@NonNull List<StickerPack> stickerPackList) {
+            this.stickerPackList = stickerPackList;
+            this.indexByIdentifier = new HashMap<>(stickerPackList.size() * 2);
+            for (int i = 0; i < stickerPackList.size(); i++) {
+                final String identifier = stickerPackList.get(i).identifier;
+                //keep the first pack for an identifier, same as the linear lookups used to do.
+                if (!indexByIdentifier.containsKey(identifier)) {
+                    indexByIdentifier.put(identifier, i);
+                }
+            }
+        }
+
+        @Override
+        public int getPackCount() {
+            return stickerPackList.size();
+        }
+
+        @Override
+        public int indexOf(@NonNull String identifier) {
+            final Integer index = indexByIdentifier.get(identifier);
+            return index == null ? -1 : index;
+        }
+
+        @NonNull
+        @Override
+        public StickerPack readStickerPack(int index) {
+            return stickerPackList.get(index);
+        }
+    }
+}
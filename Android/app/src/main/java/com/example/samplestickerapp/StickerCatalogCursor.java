@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+import static com.example.samplestickerapp.StickerContentProvider.ANDROID_APP_DOWNLOAD_LINK_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.ANIMATED_STICKER_PACK;
+import static com.example.samplestickerapp.StickerContentProvider.AVOID_CACHE;
+import static com.example.samplestickerapp.StickerContentProvider.IMAGE_DATA_VERSION;
+import static com.example.samplestickerapp.StickerContentProvider.IOS_APP_DOWNLOAD_LINK_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.LICENSE_AGREEMENT_WEBSITE;
+import static com.example.samplestickerapp.StickerContentProvider.PRIVACY_POLICY_WEBSITE;
+import static com.example.samplestickerapp.StickerContentProvider.PUBLISHER_EMAIL;
+import static com.example.samplestickerapp.StickerContentProvider.PUBLISHER_WEBSITE;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_EMOJI_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_NAME_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_SIZE_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_ICON_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_IDENTIFIER_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_NAME_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_PUBLISHER_IN_QUERY;
+
+/**
+ * Read only cursor over the immutable {@link StickerCatalog}. Columns are read straight from the catalog objects, so
+ * within this process moving through rows and reading values does not allocate, unlike filling a MatrixCursor on
+ * every query. A cursor returned to another process, such as WhatsApp, is still copied row by row into a CursorWindow
+ * by the framework, there it only saves building the MatrixCursor.
+ * Requested columns that the provider does not know are returned as null, optional columns are only returned when
+ * they are in the projection.
+ */
+abstract class StickerCatalogCursor extends AbstractCursor {
+    private static final int UNKNOWN_COLUMN = -1;
+    private static final String TRUE_STRING = "1";
+    private static final String FALSE_STRING = "0";
+
+    @NonNull
+    private final String[] columnNames;
+    @NonNull
+    private final int[] columns;
+
+    private StickerCatalogCursor(@NonNull String[] defaultColumns, @NonNull String[] allColumns, @Nullable String[] projection) {
+        this.columnNames = projection == null ? defaultColumns : projection;
+        this.columns = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columns[i] = indexOf(allColumns, columnNames[i]);
+        }
+    }
+
+    @NonNull
+    static Cursor forStickerPacks(@NonNull List<StickerPack> stickerPackList, @Nullable String[] projection) {
+        return new StickerPackCursor(stickerPackList, projection);
+    }
+
+    /**
+     * @param fileSizes the file size of each sticker, only read when the projection asks for
+     *                  {@link StickerContentProvider#STICKER_FILE_SIZE_IN_QUERY}.
+     */
+    @NonNull
+    static Cursor forStickers(@NonNull List<Sticker> stickers, @NonNull String[] joinedEmojis, @Nullable long[] fileSizes, @Nullable String[] projection) {
+        return new StickerCursor(stickers, joinedEmojis, fileSizes, projection);
+    }
+
+    static boolean isInProjection(@Nullable String[] projection, @NonNull String columnName) {
+        return projection != null && indexOf(projection, columnName) != UNKNOWN_COLUMN;
+    }
+
+    private static int indexOf(@NonNull String[] allColumns, @NonNull String columnName) {
+        for (int i = 0; i < allColumns.length; i++) {
+            if (allColumns[i].equals(columnName)) {
+                return i;
+            }
+        }
+        return UNKNOWN_COLUMN;
+    }
+
+    /**
+     * @return the value of a string column for the row.
+     */
+    @Nullable
+    abstract String getStringValue(int row, int column);
+
+    abstract boolean isIntColumn(int column);
+
+    abstract int getIntValue(int row, int column);
+
+    long getLongValue(int row, int column) {
+        return getIntValue(row, column);
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public String getString(int column) {
+        final int catalogColumn = catalogColumn(column);
+        if (catalogColumn == UNKNOWN_COLUMN) {
+            return null;
+        }
+        if (isIntColumn(catalogColumn)) {
+            final int value = getIntValue(getPosition(), catalogColumn);
+            return value == 0 ? FALSE_STRING : value == 1 ? TRUE_STRING : Integer.toString(value);
+        }
+        return getStringValue(getPosition(), catalogColumn);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    /**
+     * String columns that do not hold a number read as 0, the same as a CursorWindow does, instead of throwing.
+     */
+    @Override
+    public long getLong(int column) {
+        final int catalogColumn = catalogColumn(column);
+        if (catalogColumn == UNKNOWN_COLUMN) {
+            return 0;
+        }
+        if (isIntColumn(catalogColumn)) {
+            return getLongValue(getPosition(), catalogColumn);
+        }
+        final String value = getStringValue(getPosition(), catalogColumn);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        final int catalogColumn = catalogColumn(column);
+        return catalogColumn == UNKNOWN_COLUMN || !isIntColumn(catalogColumn) && getStringValue(getPosition(), catalogColumn) == null;
+    }
+
+    @Override
+    public int getType(int column) {
+        final int catalogColumn = catalogColumn(column);
+        if (catalogColumn == UNKNOWN_COLUMN) {
+            return Cursor.FIELD_TYPE_NULL;
+        }
+        if (isIntColumn(catalogColumn)) {
+            return Cursor.FIELD_TYPE_INTEGER;
+        }
+        return getStringValue(getPosition(), catalogColumn) == null ? Cursor.FIELD_TYPE_NULL : Cursor.FIELD_TYPE_STRING;
+    }
+
+    private int catalogColumn(int column) {
+        checkPosition();
+        if (column < 0 || column >= columns.length) {
+            throw new IllegalArgumentException("column " + column + " is out of range, column count is " + columns.length);
+        }
+        return columns[column];
+    }
+
+    private static final class StickerPackCursor extends StickerCatalogCursor {
+        private static final String[] COLUMNS = new String[]{
+                STICKER_PACK_IDENTIFIER_IN_QUERY,
+                STICKER_PACK_NAME_IN_QUERY,
+                STICKER_PACK_PUBLISHER_IN_QUERY,
+                STICKER_PACK_ICON_IN_QUERY,
+                ANDROID_APP_DOWNLOAD_LINK_IN_QUERY,
+                IOS_APP_DOWNLOAD_LINK_IN_QUERY,
+                PUBLISHER_EMAIL,
+                PUBLISHER_WEBSITE,
+                PRIVACY_POLICY_WEBSITE,
+                LICENSE_AGREEMENT_WEBSITE,
+                IMAGE_DATA_VERSION,
+                AVOID_CACHE,
+                ANIMATED_STICKER_PACK,
+        };
+        private static final int AVOID_CACHE_COLUMN = 11;
+        private static final int ANIMATED_STICKER_PACK_COLUMN = 12;
+
+        @NonNull
+        private final List<StickerPack> stickerPackList;
+
+        StickerPackCursor(@NonNull List<StickerPack> stickerPackList, @Nullable String[] projection) {
+            super(COLUMNS, COLUMNS, projection);
+            this.stickerPackList = stickerPackList;
+        }
+
+        @Override
+        public int getCount() {
+            return stickerPackList.size();
+        }
+
+        @Nullable
+        @Override
+        String getStringValue(int row, int column) {
+            final StickerPack stickerPack = stickerPackList.get(row);
+            switch (column) {
+                case 0:
+                    return stickerPack.identifier;
+                case 1:
+                    return stickerPack.name;
+                case 2:
+                    return stickerPack.publisher;
+                case 3:
+                    return stickerPack.trayImageFile;
+                case 4:
+                    return stickerPack.androidPlayStoreLink;
+                case 5:
+                    return stickerPack.iosAppStoreLink;
+                case 6:
+                    return stickerPack.publisherEmail;
+                case 7:
+                    return stickerPack.publisherWebsite;
+                case 8:
+                    return stickerPack.privacyPolicyWebsite;
+                case 9:
+                    return stickerPack.licenseAgreementWebsite;
+                case 10:
+                    return stickerPack.imageDataVersion;
+                default:
+                    throw new IllegalArgumentException("not a string column: " + COLUMNS[column]);
+            }
+        }
+
+        @Override
+        boolean isIntColumn(int column) {
+            return column == AVOID_CACHE_COLUMN || column == ANIMATED_STICKER_PACK_COLUMN;
+        }
+
+        @Override
+        int getIntValue(int row, int column) {
+            final StickerPack stickerPack = stickerPackList.get(row);
+            if (column == AVOID_CACHE_COLUMN) {
+                return stickerPack.avoidCache ? 1 : 0;
+            }
+            return stickerPack.animatedStickerPack ? 1 : 0;
+        }
+    }
+
+    private static final class StickerCursor extends StickerCatalogCursor {
+        private static final String[] DEFAULT_COLUMNS = new String[]{
+                STICKER_FILE_NAME_IN_QUERY,
+                STICKER_FILE_EMOJI_IN_QUERY,
+                STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY,
+        };
+        private static final String[] COLUMNS = new String[]{
+                STICKER_FILE_NAME_IN_QUERY,
+                STICKER_FILE_EMOJI_IN_QUERY,
+                STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY,
+                STICKER_FILE_SIZE_IN_QUERY,
+        };
+        private static final int FILE_SIZE_COLUMN = 3;
+
+        @NonNull
+        private final List<Sticker> stickers;
+        @NonNull
+        private final String[] joinedEmojis;
+        @Nullable
+        private final long[] fileSizes;
+
+        StickerCursor(@NonNull List<Sticker> stickers, @NonNull String[] joinedEmojis, @Nullable long[] fileSizes, @Nullable String[] projection) {
+            super(DEFAULT_COLUMNS, COLUMNS, projection);
+            this.stickers = stickers;
+            this.joinedEmojis = joinedEmojis;
+            this.fileSizes = fileSizes;
+        }
+
+        @Override
+        public int getCount() {
+            return stickers.size();
+        }
+
+        @Nullable
+        @Override
+        String getStringValue(int row, int column) {
+            switch (column) {
+                case 0:
+                    return stickers.get(row).imageFileName;
+                case 1:
+                    return joinedEmojis[row];
+                case 2:
+                    return stickers.get(row).accessibilityText;
+                default:
+                    throw new IllegalArgumentException("not a string column: " + COLUMNS[column]);
+            }
+        }
+
+        @Override
+        boolean isIntColumn(int column) {
+            return column == FILE_SIZE_COLUMN;
+        }
+
+        @Override
+        int getIntValue(int row, int column) {
+            return (int) getLongValue(row, column);
+        }
+
+        @Override
+        long getLongValue(int row, int column) {
+            return fileSizes == null ? 0 : fileSizes[row];
+        }
+    }
+}
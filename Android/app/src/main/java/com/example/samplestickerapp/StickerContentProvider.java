@@ -16,8 +16,10 @@ import android.content.UriMatcher;
 import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.Process;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -53,7 +55,17 @@ public class StickerContentProvider extends ContentProvider {
     public static final String STICKER_FILE_NAME_IN_QUERY = "sticker_file_name";
     public static final String STICKER_FILE_EMOJI_IN_QUERY = "sticker_emoji";
     public static final String STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY = "sticker_accessibility_text";
-    private static final String CONTENT_FILE_NAME = "contents.json";
+    /**
+     * Optional column, only returned when it is in the projection. Lets this app compute pack sizes without reading the stickers.
+     */
+    static final String STICKER_FILE_SIZE_IN_QUERY = "sticker_file_size";
+    static final String CONTENT_FILE_NAME = "contents.json";
+
+    /**
+     * Used by this app only, see {@link #call(String, String, Bundle)}. WhatsApp keeps using the uris below.
+     */
+    static final String METHOD_GET_STICKER_PACKS = "get_sticker_packs";
+    static final String KEY_STICKER_PACK_LIST = "sticker_pack_list";
 
     public static final Uri AUTHORITY_URI = new Uri.Builder().scheme(ContentResolver.SCHEME_CONTENT).authority(BuildConfig.CONTENT_PROVIDER_AUTHORITY).appendPath(StickerContentProvider.METADATA).build();
 
@@ -74,7 +86,14 @@ public class StickerContentProvider extends ContentProvider {
 
     private static final int STICKER_PACK_TRAY_ICON_CODE = 5;
 
-    private List<StickerPack> stickerPackList;
+    /**
+     * Small previews of the stickers generated at build time, used by this app only. WhatsApp keeps using the full
+     * stickers under {@link #STICKERS_ASSET}.
+     */
+    static final String STICKER_THUMBNAILS = "sticker_thumbnails";
+    private static final int STICKER_THUMBNAIL_CODE = 6;
+
+    private volatile StickerCatalog stickerCatalog;
 
     @Override
     public boolean onCreate() {
@@ -92,12 +111,12 @@ public class StickerContentProvider extends ContentProvider {
         //gets the list of stickers for a sticker pack, * represent the identifier.
         MATCHER.addURI(authority, STICKERS + "/*", STICKERS_CODE);
 
-        for (StickerPack stickerPack : getStickerPackList()) {
-            MATCHER.addURI(authority, STICKERS_ASSET + "/" + stickerPack.identifier + "/" + stickerPack.trayImageFile, STICKER_PACK_TRAY_ICON_CODE);
-            for (Sticker sticker : stickerPack.getStickers()) {
-                MATCHER.addURI(authority, STICKERS_ASSET + "/" + stickerPack.identifier + "/" + sticker.imageFileName, STICKERS_ASSET_CODE);
-            }
-        }
+        //gets a sticker or tray image file, the first * represents the identifier and the second * the file name.
+        //a single wildcard route keeps start up cost constant, the file is checked against the catalog when the uri is resolved.
+        MATCHER.addURI(authority, STICKERS_ASSET + "/*/*", STICKERS_ASSET_CODE);
+
+        //gets the thumbnail of a sticker, the first * represents the identifier and the second * the sticker file name.
+        MATCHER.addURI(authority, STICKER_THUMBNAILS + "/*/*", STICKER_THUMBNAIL_CODE);
 
         return true;
     }
@@ -107,22 +126,43 @@ public class StickerContentProvider extends ContentProvider {
                         String[] selectionArgs, String sortOrder) {
         final int code = MATCHER.match(uri);
         if (code == METADATA_CODE) {
-            return getPackForAllStickerPacks(uri);
+            return getPackForAllStickerPacks(uri, projection);
         } else if (code == METADATA_CODE_FOR_SINGLE_PACK) {
-            return getCursorForSingleStickerPack(uri);
+            return getCursorForSingleStickerPack(uri, projection);
         } else if (code == STICKERS_CODE) {
-            return getStickersForAStickerPack(uri);
+            return getStickersForAStickerPack(uri, projection);
         } else {
             throw new IllegalArgumentException("Unknown URI: " + uri);
         }
     }
 
+    /**
+     * Returns the whole catalog, packs with their stickers and sticker file sizes, in a single round trip instead of
+     * one query per pack and one read per sticker. call() is not guarded by the provider's read permission, so it only
+     * serves this app.
+     */
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if (!METHOD_GET_STICKER_PACKS.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        if (Binder.getCallingUid() != Process.myUid()) {
+            throw new SecurityException(METHOD_GET_STICKER_PACKS + " can only be called by " + Objects.requireNonNull(getContext()).getPackageName());
+        }
+        final Bundle bundle = new Bundle();
+        bundle.putParcelableArrayList(KEY_STICKER_PACK_LIST, getStickerPacksWithFileSizes());
+        return bundle;
+    }
+
     @Nullable
     @Override
     public AssetFileDescriptor openAssetFile(@NonNull Uri uri, @NonNull String mode) {
-        final int matchCode = MATCHER.match(uri);
+        final int matchCode = match(uri);
         if (matchCode == STICKERS_ASSET_CODE || matchCode == STICKER_PACK_TRAY_ICON_CODE) {
             return getImageAsset(uri);
+        } else if (matchCode == STICKER_THUMBNAIL_CODE) {
+            return getThumbnailAsset(uri);
         }
         return null;
     }
@@ -130,7 +170,7 @@ public class StickerContentProvider extends ContentProvider {
 
     @Override
     public String getType(@NonNull Uri uri) {
-        final int matchCode = MATCHER.match(uri);
+        final int matchCode = match(uri);
         switch (matchCode) {
             case METADATA_CODE:
                 return "vnd.android.cursor.dir/vnd." + BuildConfig.CONTENT_PROVIDER_AUTHORITY + "." + METADATA;
@@ -139,6 +179,7 @@ public class StickerContentProvider extends ContentProvider {
             case STICKERS_CODE:
                 return "vnd.android.cursor.dir/vnd." + BuildConfig.CONTENT_PROVIDER_AUTHORITY + "." + STICKERS;
             case STICKERS_ASSET_CODE:
+            case STICKER_THUMBNAIL_CODE:
                 return "image/webp";
             case STICKER_PACK_TRAY_ICON_CODE:
                 return "image/png";
@@ -147,89 +188,148 @@ public class StickerContentProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Matches the uri, and tells apart tray icons from stickers for the wildcard asset route. Asset and thumbnail uris
+     * for files that are not in the catalog do not match, there are no thumbnails of tray icons.
+     */
+    private int match(@NonNull Uri uri) {
+        final int code = MATCHER.match(uri);
+        if (code != STICKERS_ASSET_CODE && code != STICKER_THUMBNAIL_CODE) {
+            return code;
+        }
+        final List<String> pathSegments = uri.getPathSegments();
+        final String identifier = pathSegments.get(pathSegments.size() - 2);
+        final String fileName = pathSegments.get(pathSegments.size() - 1);
+        final StickerCatalog catalog = getStickerCatalog();
+        if (code == STICKER_THUMBNAIL_CODE) {
+            return catalog.containsAsset(identifier, fileName) && !catalog.isTrayImage(identifier, fileName) ? STICKER_THUMBNAIL_CODE : UriMatcher.NO_MATCH;
+        }
+        if (catalog.isTrayImage(identifier, fileName)) {
+            return STICKER_PACK_TRAY_ICON_CODE;
+        } else if (catalog.containsAsset(identifier, fileName)) {
+            return STICKERS_ASSET_CODE;
+        }
+        return UriMatcher.NO_MATCH;
+    }
+
     private synchronized void readContentFile(@NonNull Context context) {
+        if (stickerCatalog != null) {
+            return;
+        }
+        //the compiled catalog is generated from contents.json at build time, it is memory mapped instead of parsed.
+        try {
+            final CompiledStickerCatalog compiledStickerCatalog = CompiledStickerCatalog.open(context.getAssets());
+            if (compiledStickerCatalog != null) {
+                stickerCatalog = StickerCatalog.fromSource(compiledStickerCatalog);
+                return;
+            }
+        } catch (IOException | IllegalStateException e) {
+            Log.w(context.getPackageName(), CompiledStickerCatalog.COMPILED_CATALOG_FILE_NAME + " cannot be read, falling back to " + CONTENT_FILE_NAME, e);
+        }
         try (InputStream contentsInputStream = context.getAssets().open(CONTENT_FILE_NAME)) {
-            stickerPackList = ContentFileParser.parseStickerPacks(contentsInputStream);
+            stickerCatalog = StickerCatalog.fromStickerPacks(ContentFileParser.parseStickerPacks(contentsInputStream));
         } catch (IOException | IllegalStateException e) {
             throw new RuntimeException(CONTENT_FILE_NAME + " file has some issues: " + e.getMessage(), e);
         }
     }
 
-    private List<StickerPack> getStickerPackList() {
-        if (stickerPackList == null) {
+    private StickerCatalog getStickerCatalog() {
+        if (stickerCatalog == null) {
             readContentFile(Objects.requireNonNull(getContext()));
         }
-        return stickerPackList;
+        return stickerCatalog;
     }
 
-    private Cursor getPackForAllStickerPacks(@NonNull Uri uri) {
-        return getStickerPackInfo(uri, getStickerPackList());
+    private Cursor getPackForAllStickerPacks(@NonNull Uri uri, @Nullable String[] projection) {
+        return getStickerPackInfo(uri, projection, getStickerCatalog().getStickerPackList());
     }
 
-    private Cursor getCursorForSingleStickerPack(@NonNull Uri uri) {
+    private Cursor getCursorForSingleStickerPack(@NonNull Uri uri, @Nullable String[] projection) {
         final String identifier = uri.getLastPathSegment();
-        for (StickerPack stickerPack : getStickerPackList()) {
-            if (identifier.equals(stickerPack.identifier)) {
-                return getStickerPackInfo(uri, Collections.singletonList(stickerPack));
-            }
+        final StickerPack stickerPack = identifier == null ? null : getStickerCatalog().getStickerPack(identifier);
+        if (stickerPack != null) {
+            return getStickerPackInfo(uri, projection, Collections.singletonList(stickerPack));
         }
-
-        return getStickerPackInfo(uri, new ArrayList<>());
+        return getStickerPackInfo(uri, projection, Collections.emptyList());
     }
 
     @NonNull
-    private Cursor getStickerPackInfo(@NonNull Uri uri, @NonNull List<StickerPack> stickerPackList) {
-        MatrixCursor cursor = new MatrixCursor(
-                new String[]{
-                        STICKER_PACK_IDENTIFIER_IN_QUERY,
-                        STICKER_PACK_NAME_IN_QUERY,
-                        STICKER_PACK_PUBLISHER_IN_QUERY,
-                        STICKER_PACK_ICON_IN_QUERY,
-                        ANDROID_APP_DOWNLOAD_LINK_IN_QUERY,
-                        IOS_APP_DOWNLOAD_LINK_IN_QUERY,
-                        PUBLISHER_EMAIL,
-                        PUBLISHER_WEBSITE,
-                        PRIVACY_POLICY_WEBSITE,
-                        LICENSE_AGREEMENT_WEBSITE,
-                        IMAGE_DATA_VERSION,
-                        AVOID_CACHE,
-                        ANIMATED_STICKER_PACK,
-                });
-        for (StickerPack stickerPack : stickerPackList) {
-            MatrixCursor.RowBuilder builder = cursor.newRow();
-            builder.add(stickerPack.identifier);
-            builder.add(stickerPack.name);
-            builder.add(stickerPack.publisher);
-            builder.add(stickerPack.trayImageFile);
-            builder.add(stickerPack.androidPlayStoreLink);
-            builder.add(stickerPack.iosAppStoreLink);
-            builder.add(stickerPack.publisherEmail);
-            builder.add(stickerPack.publisherWebsite);
-            builder.add(stickerPack.privacyPolicyWebsite);
-            builder.add(stickerPack.licenseAgreementWebsite);
-            builder.add(stickerPack.imageDataVersion);
-            builder.add(stickerPack.avoidCache ? 1 : 0);
-            builder.add(stickerPack.animatedStickerPack ? 1 : 0);
-        }
+    private Cursor getStickerPackInfo(@NonNull Uri uri, @Nullable String[] projection, @NonNull List<StickerPack> stickerPackList) {
+        final Cursor cursor = StickerCatalogCursor.forStickerPacks(stickerPackList, projection);
         cursor.setNotificationUri(Objects.requireNonNull(getContext()).getContentResolver(), uri);
         return cursor;
     }
 
     @NonNull
-    private Cursor getStickersForAStickerPack(@NonNull Uri uri) {
+    private Cursor getStickersForAStickerPack(@NonNull Uri uri, @Nullable String[] projection) {
         final String identifier = uri.getLastPathSegment();
-        MatrixCursor cursor = new MatrixCursor(new String[]{STICKER_FILE_NAME_IN_QUERY, STICKER_FILE_EMOJI_IN_QUERY, STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY});
-        for (StickerPack stickerPack : getStickerPackList()) {
-            if (identifier.equals(stickerPack.identifier)) {
-                for (Sticker sticker : stickerPack.getStickers()) {
-                    cursor.addRow(new Object[]{sticker.imageFileName, TextUtils.join(",", sticker.emojis), sticker.accessibilityText});
+        final StickerCatalog catalog = getStickerCatalog();
+        final Cursor cursor;
+        if (identifier != null) {
+            final List<Sticker> stickers = catalog.getStickers(identifier);
+            long[] fileSizes = null;
+            if (StickerCatalogCursor.isInProjection(projection, STICKER_FILE_SIZE_IN_QUERY)) {
+                final AssetManager am = Objects.requireNonNull(getContext()).getAssets();
+                fileSizes = new long[stickers.size()];
+                for (int i = 0; i < stickers.size(); i++) {
+                    fileSizes[i] = getStickerFileSize(am, identifier, stickers.get(i));
                 }
             }
+            cursor = StickerCatalogCursor.forStickers(stickers, catalog.getJoinedEmojis(identifier), fileSizes, projection);
+        } else {
+            cursor = StickerCatalogCursor.forStickers(Collections.emptyList(), new String[0], null, projection);
         }
         cursor.setNotificationUri(Objects.requireNonNull(getContext()).getContentResolver(), uri);
         return cursor;
     }
 
+    /**
+     * The packs are copied, calls from the same process are not parceled and the caller should not modify the catalog.
+     */
+    @NonNull
+    private ArrayList<StickerPack> getStickerPacksWithFileSizes() {
+        final AssetManager am = Objects.requireNonNull(getContext()).getAssets();
+        final List<StickerPack> catalogStickerPacks = getStickerCatalog().getStickerPackList();
+        final ArrayList<StickerPack> stickerPackList = new ArrayList<>(catalogStickerPacks.size());
+        for (StickerPack catalogStickerPack : catalogStickerPacks) {
+            final StickerPack stickerPack = new StickerPack(catalogStickerPack.identifier, catalogStickerPack.name, catalogStickerPack.publisher, catalogStickerPack.trayImageFile, catalogStickerPack.publisherEmail, catalogStickerPack.publisherWebsite, catalogStickerPack.privacyPolicyWebsite, catalogStickerPack.licenseAgreementWebsite, catalogStickerPack.imageDataVersion, catalogStickerPack.avoidCache, catalogStickerPack.animatedStickerPack);
+            stickerPack.setAndroidPlayStoreLink(catalogStickerPack.androidPlayStoreLink);
+            stickerPack.setIosAppStoreLink(catalogStickerPack.iosAppStoreLink);
+            final List<Sticker> catalogStickers = catalogStickerPack.getStickers();
+            final List<Sticker> stickers = new ArrayList<>(catalogStickers.size());
+            for (Sticker catalogSticker : catalogStickers) {
+                final Sticker sticker = new Sticker(catalogSticker.imageFileName, new ArrayList<>(catalogSticker.emojis), catalogSticker.accessibilityText);
+                sticker.setSize(getStickerFileSize(am, stickerPack.identifier, catalogSticker));
+                stickers.add(sticker);
+            }
+            stickerPack.setStickers(stickers);
+            stickerPackList.add(stickerPack);
+        }
+        return stickerPackList;
+    }
+
+    /**
+     * @return the size precomputed in the compiled catalog, or else the length of the asset file.
+     */
+    private long getStickerFileSize(@NonNull AssetManager am, @NonNull String identifier, @NonNull Sticker sticker) {
+        if (sticker.size > 0) {
+            return sticker.size;
+        }
+        return getAssetFileLength(am, identifier, sticker.imageFileName);
+    }
+
+    /**
+     * @return the length of the asset file, or 0 if it cannot be opened.
+     */
+    private long getAssetFileLength(@NonNull AssetManager am, @NonNull String identifier, @NonNull String fileName) {
+        try (AssetFileDescriptor assetFileDescriptor = am.openFd(identifier + "/" + fileName)) {
+            return assetFileDescriptor.getLength();
+        } catch (IOException e) {
+            Log.e(Objects.requireNonNull(getContext()).getPackageName(), "IOException when getting asset file length, file: " + identifier + "/" + fileName, e);
+            return 0;
+        }
+    }
+
     private AssetFileDescriptor getImageAsset(Uri uri) throws IllegalArgumentException {
         AssetManager am = Objects.requireNonNull(getContext()).getAssets();
         final List<String> pathSegments = uri.getPathSegments();
@@ -245,22 +345,30 @@ public class StickerContentProvider extends ContentProvider {
             throw new IllegalArgumentException("file name is empty, uri: " + uri);
         }
         //making sure the file that is trying to be fetched is in the list of stickers.
-        for (StickerPack stickerPack : getStickerPackList()) {
-            if (identifier.equals(stickerPack.identifier)) {
-                if (fileName.equals(stickerPack.trayImageFile)) {
-                    return fetchFile(uri, am, fileName, identifier);
-                } else {
-                    for (Sticker sticker : stickerPack.getStickers()) {
-                        if (fileName.equals(sticker.imageFileName)) {
-                            return fetchFile(uri, am, fileName, identifier);
-                        }
-                    }
-                }
-            }
+        if (getStickerCatalog().containsAsset(identifier, fileName)) {
+            return fetchFile(uri, am, fileName, identifier);
         }
         return null;
     }
 
+    /**
+     * @return the thumbnail of the sticker, or the sticker itself if the build did not generate a thumbnail for it.
+     */
+    private AssetFileDescriptor getThumbnailAsset(@NonNull Uri uri) {
+        if (Binder.getCallingUid() != Process.myUid()) {
+            throw new SecurityException(STICKER_THUMBNAILS + " can only be read by " + Objects.requireNonNull(getContext()).getPackageName());
+        }
+        final AssetManager am = Objects.requireNonNull(getContext()).getAssets();
+        final List<String> pathSegments = uri.getPathSegments();
+        final String identifier = pathSegments.get(pathSegments.size() - 2);
+        final String fileName = pathSegments.get(pathSegments.size() - 1);
+        try {
+            return am.openFd(STICKER_THUMBNAILS + "/" + identifier + "/" + fileName);
+        } catch (IOException e) {
+            return fetchFile(uri, am, fileName, identifier);
+        }
+    }
+
     private AssetFileDescriptor fetchFile(@NonNull Uri uri, @NonNull AssetManager am, @NonNull String fileName, @NonNull String identifier) {
         try {
             return am.openFd(identifier + "/" + fileName);
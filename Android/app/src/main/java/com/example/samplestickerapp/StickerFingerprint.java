@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.ContentResolver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Fingerprint of a sticker file: its size and a CRC32 of all its bytes. Every chunk the validator reads, including the
+ * ANMF frame headers in the middle of an animated sticker, is covered, so an unchanged fingerprint means the file does
+ * not need to be validated again.
+ */
+final class StickerFingerprint {
+    final long size;
+    final long crc;
+
+    StickerFingerprint(long size, long crc) {
+        this.size = size;
+        this.crc = crc;
+    }
+
+    /**
+     * Hashes the memory mapped asset, see {@link StickerPackLoader#fetchStickerAssetBuffer}, so the file is not copied
+     * into the heap.
+     */
+    @NonNull
+    static StickerFingerprint compute(@NonNull ContentResolver contentResolver, @NonNull String identifier, @NonNull String fileName) throws IOException {
+        return compute(StickerPackLoader.fetchStickerAssetBuffer(identifier, fileName, contentResolver));
+    }
+
+    /**
+     * Hashes the bytes from the position to the limit of the buffer, without moving its position.
+     */
+    @NonNull
+    static StickerFingerprint compute(@NonNull ByteBuffer buffer) {
+        final ByteBuffer source = buffer.duplicate();
+        final CRC32 crc = new CRC32();
+        if (source.hasArray()) {
+            crc.update(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            return new StickerFingerprint(buffer.remaining(), crc.getValue());
+        }
+        //CRC32.update(ByteBuffer) needs API 26, a mapped asset is hashed through a pooled scratch array instead.
+        final StickerAssetBufferPool bufferPool = StickerAssetBufferPool.getInstance();
+        final byte[] scratch = bufferPool.acquire(StickerAssetBufferPool.SMALL_BUFFER_SIZE);
+        try {
+            while (source.hasRemaining()) {
+                final int length = Math.min(scratch.length, source.remaining());
+                source.get(scratch, 0, length);
+                crc.update(scratch, 0, length);
+            }
+        } finally {
+            bufferPool.release(scratch);
+        }
+        return new StickerFingerprint(buffer.remaining(), crc.getValue());
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StickerFingerprint)) {
+            return false;
+        }
+        final StickerFingerprint that = (StickerFingerprint) o;
+        return size == that.size && crc == that.crc;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.valueOf(size).hashCode() + Long.valueOf(crc).hashCode();
+    }
+}
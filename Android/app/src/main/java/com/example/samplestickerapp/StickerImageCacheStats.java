@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.imagepipeline.cache.ImageCacheStatsTracker;
+import com.facebook.imagepipeline.cache.MemoryCache;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the hits and misses of the image pipeline memory caches, and reads how many entries they hold, to tune
+ * {@link StickerImagePipelineConfig}. Fresco does not report evictions, so they are not counted.
+ */
+final class StickerImageCacheStats implements ImageCacheStatsTracker {
+    private static final StickerImageCacheStats INSTANCE = new StickerImageCacheStats();
+
+    private final AtomicLong bitmapCacheHitCount = new AtomicLong();
+    private final AtomicLong bitmapCacheMissCount = new AtomicLong();
+    private final AtomicLong encodedCacheHitCount = new AtomicLong();
+    private final AtomicLong encodedCacheMissCount = new AtomicLong();
+    private volatile MemoryCache<?, ?> bitmapMemoryCache;
+    private volatile MemoryCache<?, ?> encodedMemoryCache;
+
+    @NonNull
+    static StickerImageCacheStats getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void onBitmapCachePut(CacheKey cacheKey) {
+    }
+
+    @Override
+    public void onBitmapCacheHit(CacheKey cacheKey) {
+        bitmapCacheHitCount.incrementAndGet();
+    }
+
+    @Override
+    public void onBitmapCacheMiss(CacheKey cacheKey) {
+        bitmapCacheMissCount.incrementAndGet();
+    }
+
+    @Override
+    public void onMemoryCachePut(CacheKey cacheKey) {
+    }
+
+    @Override
+    public void onMemoryCacheHit(CacheKey cacheKey) {
+        encodedCacheHitCount.incrementAndGet();
+    }
+
+    @Override
+    public void onMemoryCacheMiss(CacheKey cacheKey) {
+        encodedCacheMissCount.incrementAndGet();
+    }
+
+    @Override
+    public void onStagingAreaHit(CacheKey cacheKey) {
+    }
+
+    @Override
+    public void onStagingAreaMiss(CacheKey cacheKey) {
+    }
+
+    //the disk cache is not used, see StickerImagePipelineConfig.
+    @Override
+    public void onDiskCacheHit(CacheKey cacheKey) {
+    }
+
+    @Override
+    public void onDiskCacheMiss(CacheKey cacheKey) {
+    }
+
+    @Override
+    public void onDiskCacheGetFail(CacheKey cacheKey) {
+    }
+
+    @Override
+    public void onDiskCachePut(CacheKey cacheKey) {
+    }
+
+    @Override
+    public void registerBitmapMemoryCache(MemoryCache<?, ?> bitmapMemoryCache) {
+        this.bitmapMemoryCache = bitmapMemoryCache;
+    }
+
+    @Override
+    public void registerEncodedMemoryCache(MemoryCache<?, ?> encodedMemoryCache) {
+        this.encodedMemoryCache = encodedMemoryCache;
+    }
+
+    long getBitmapCacheHitCount() {
+        return bitmapCacheHitCount.get();
+    }
+
+    long getBitmapCacheMissCount() {
+        return bitmapCacheMissCount.get();
+    }
+
+    int getBitmapCacheEntryCount() {
+        return getEntryCount(bitmapMemoryCache);
+    }
+
+    long getEncodedCacheHitCount() {
+        return encodedCacheHitCount.get();
+    }
+
+    long getEncodedCacheMissCount() {
+        return encodedCacheMissCount.get();
+    }
+
+    int getEncodedCacheEntryCount() {
+        return getEntryCount(encodedMemoryCache);
+    }
+
+    private static int getEntryCount(MemoryCache<?, ?> memoryCache) {
+        return memoryCache == null ? 0 : memoryCache.getCount();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "bitmap cache: %d hits, %d misses, %d entries; encoded cache: %d hits, %d misses, %d entries",
+                getBitmapCacheHitCount(), getBitmapCacheMissCount(), getBitmapCacheEntryCount(),
+                getEncodedCacheHitCount(), getEncodedCacheMissCount(), getEncodedCacheEntryCount());
+    }
+}
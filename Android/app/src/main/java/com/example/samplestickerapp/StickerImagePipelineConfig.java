@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.imagepipeline.cache.MemoryCacheParams;
+import com.facebook.imagepipeline.core.DefaultExecutorSupplier;
+import com.facebook.imagepipeline.core.ImagePipelineConfig;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The Fresco pipeline config of the app. The stickers are read from our own content provider, so:
+ * <ul>
+ * <li>the memory caches are sized from the memory class of the device, as the stickers are many and 512x512.</li>
+ * <li>the disk cache is not used, it would only copy files that are already on local storage. The requests disable it,
+ * see {@link StickerPreviewRequests}.</li>
+ * <li>the decodes run on their own {@link TaskScheduler.Lane#DECODE} threads.</li>
+ * <li>the cache hits and misses are counted by {@link StickerImageCacheStats}.</li>
+ * </ul>
+ */
+final class StickerImagePipelineConfig {
+    private static final int MB_IN_BYTES = 1024 * 1024;
+    //fractions of the memory class given to the caches.
+    private static final int BITMAP_CACHE_MEMORY_CLASS_DIVISOR = 4;
+    private static final int ENCODED_CACHE_MEMORY_CLASS_DIVISOR = 16;
+    private static final int MAX_BITMAP_CACHE_ENTRIES = 256;
+    private static final int MAX_ENCODED_CACHE_ENTRIES = 128;
+
+    private StickerImagePipelineConfig() {
+    }
+
+    @NonNull
+    static ImagePipelineConfig build(@NonNull Context context) {
+        final ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        final int memoryClassBytes = activityManager.getMemoryClass() * MB_IN_BYTES;
+        final MemoryCacheParams bitmapCacheParams = newMemoryCacheParams(memoryClassBytes / BITMAP_CACHE_MEMORY_CLASS_DIVISOR, MAX_BITMAP_CACHE_ENTRIES, Integer.MAX_VALUE);
+        //a single encoded sticker is at most the animated sticker file limit.
+        final MemoryCacheParams encodedCacheParams = newMemoryCacheParams(memoryClassBytes / ENCODED_CACHE_MEMORY_CLASS_DIVISOR, MAX_ENCODED_CACHE_ENTRIES, StickerAssetBufferPool.LARGE_BUFFER_SIZE);
+        return ImagePipelineConfig.newBuilder(context)
+                .setBitmapMemoryCacheParamsSupplier(() -> bitmapCacheParams)
+                .setEncodedMemoryCacheParamsSupplier(() -> encodedCacheParams)
+                //the sticker previews are downsampled to their cell size, see StickerPreviewRequests.
+                .setDownsampleEnabled(true)
+                .setExecutorSupplier(new StickerExecutorSupplier())
+                .setImageCacheStatsTracker(StickerImageCacheStats.getInstance())
+                .build();
+    }
+
+    @NonNull
+    private static MemoryCacheParams newMemoryCacheParams(int maxCacheSize, int maxCacheEntries, int maxCacheEntrySize) {
+        //the eviction queue holds the entries no view uses, it can take up to the whole cache.
+        return new MemoryCacheParams(maxCacheSize, maxCacheEntries, maxCacheSize, maxCacheEntries, maxCacheEntrySize);
+    }
+
+    /**
+     * Fresco's executors, except for the decodes which run on the scheduler's decode lane.
+     */
+    private static final class StickerExecutorSupplier extends DefaultExecutorSupplier {
+        StickerExecutorSupplier() {
+            super(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        }
+
+        @Override
+        public Executor forDecode() {
+            return TaskScheduler.getInstance().getExecutor(TaskScheduler.Lane.DECODE);
+        }
+    }
+}
@@ -11,9 +11,15 @@ package com.example.samplestickerapp;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import androidx.annotation.Nullable;
+
 import java.util.List;
 
 class StickerPack implements Parcelable {
+    private static final int VALIDATION_UNKNOWN = 0;
+    private static final int VALIDATION_VALID = 1;
+    private static final int VALIDATION_INVALID = 2;
+
     final String identifier;
     final String name;
     final String publisher;
@@ -30,7 +36,10 @@ class StickerPack implements Parcelable {
     private List<Sticker> stickers;
     private long totalSize;
     String androidPlayStoreLink;
-    private boolean isWhitelisted;
+    //written on the validation and whitelist check threads while the main thread shows the pack.
+    private volatile boolean isWhitelisted;
+    private volatile int validationState = VALIDATION_UNKNOWN;
+    private volatile String validationError;
 
     StickerPack(String identifier, String name, String publisher, String trayImageFile, String publisherEmail, String publisherWebsite, String privacyPolicyWebsite, String licenseAgreementWebsite, String imageDataVersion, boolean avoidCache, boolean animatedStickerPack) {
         this.identifier = identifier;
@@ -54,6 +63,33 @@ class StickerPack implements Parcelable {
         return isWhitelisted;
     }
 
+    /**
+     * Remembers the result of validating the pack, so it is not validated again.
+     *
+     * @param validationError null if the pack is valid.
+     */
+    void setValidationResult(@Nullable String validationError) {
+        //the error is set first, so a thread that sees the new state also sees its error.
+        this.validationError = validationError;
+        this.validationState = validationError == null ? VALIDATION_VALID : VALIDATION_INVALID;
+    }
+
+    boolean isValidated() {
+        return validationState != VALIDATION_UNKNOWN;
+    }
+
+    boolean isValid() {
+        return validationState == VALIDATION_VALID;
+    }
+
+    /**
+     * @return the validation error, or null if the pack is valid or was not validated.
+     */
+    @Nullable
+    String getValidationError() {
+        return validationError;
+    }
+
     private StickerPack(Parcel in) {
         identifier = in.readString();
         name = in.readString();
@@ -71,6 +107,8 @@ class StickerPack implements Parcelable {
         imageDataVersion = in.readString();
         avoidCache = in.readByte() != 0;
         animatedStickerPack = in.readByte() != 0;
+        validationState = in.readInt();
+        validationError = in.readString();
     }
 
     public static final Creator<StickerPack> CREATOR = new Creator<StickerPack>() {
@@ -132,5 +170,7 @@ class StickerPack implements Parcelable {
         dest.writeString(imageDataVersion);
         dest.writeByte((byte) (avoidCache ? 1 : 0));
         dest.writeByte((byte) (animatedStickerPack ? 1 : 0));
+        dest.writeInt(validationState);
+        dest.writeString(validationError);
     }
 }
@@ -8,9 +8,9 @@
 
 package com.example.samplestickerapp;
 
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.format.Formatter;
 import android.view.Menu;
@@ -26,7 +26,6 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.facebook.drawee.view.SimpleDraweeView;
 
-import java.lang.ref.WeakReference;
 
 public class StickerPackDetailsActivity extends AddStickerPackActivity {
 
@@ -45,16 +44,21 @@ public class StickerPackDetailsActivity extends AddStickerPackActivity {
     public static final String EXTRA_SHOW_UP_BUTTON = "show_up_button";
     public static final String EXTRA_STICKER_PACK_DATA = "sticker_pack";
 
+    private static final float RESOLVING_ADD_BUTTON_ALPHA = 0.5f;
+    private static final int PREFETCH_MAX_LOOKAHEAD_ROWS = 3;
+    private static final long PREFETCH_BYTE_BUDGET = 4 * 1024 * 1024;
+
 
     private RecyclerView recyclerView;
     private GridLayoutManager layoutManager;
     private StickerPreviewAdapter stickerPreviewAdapter;
+    private StickerPreviewPrefetcher previewPrefetcher;
     private int numColumns;
     private View addButton;
     private View alreadyAddedText;
     private StickerPack stickerPack;
     private View divider;
-    private WhiteListCheckAsyncTask whiteListCheckAsyncTask;
+    private TaskScheduler.Handle<WhitelistStatusService.Status> whiteListCheckHandle;
 
 
     @Override
@@ -80,6 +84,8 @@ public class StickerPackDetailsActivity extends AddStickerPackActivity {
         if (stickerPreviewAdapter == null) {
             stickerPreviewAdapter = new StickerPreviewAdapter(getLayoutInflater(), R.drawable.sticker_error, getResources().getDimensionPixelSize(R.dimen.sticker_pack_details_image_size), getResources().getDimensionPixelSize(R.dimen.sticker_pack_details_image_padding), stickerPack, expandedStickerView);
             recyclerView.setAdapter(stickerPreviewAdapter);
+            previewPrefetcher = new StickerPreviewPrefetcher(layoutManager, stickerPreviewAdapter, getResources().getDimensionPixelSize(R.dimen.sticker_pack_details_image_size), PREFETCH_MAX_LOOKAHEAD_ROWS, PREFETCH_BYTE_BUDGET);
+            recyclerView.addOnScrollListener(previewPrefetcher);
         }
         packNameTextView.setText(stickerPack.name);
         packPublisherTextView.setText(stickerPack.publisher);
@@ -162,18 +168,43 @@ public class StickerPackDetailsActivity extends AddStickerPackActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        whiteListCheckAsyncTask = new WhiteListCheckAsyncTask(this);
-        whiteListCheckAsyncTask.execute(stickerPack);
+        final WhitelistStatusService.Status cachedStatus = WhitelistStatusService.getInstance().getCachedStatus(stickerPack.identifier);
+        if (cachedStatus != null) {
+            updateAddUI(cachedStatus.isWhitelisted());
+            return;
+        }
+        final Context context = getApplicationContext();
+        final String identifier = stickerPack.identifier;
+        whiteListCheckHandle = TaskScheduler.getInstance().submit(TaskScheduler.Lane.IPC, getWhitelistCheckKey(identifier), cancellationToken -> WhitelistStatusService.getInstance().getStatus(context, identifier), new TaskScheduler.Callback<WhitelistStatusService.Status>() {
+            @Override
+            public void onResult(WhitelistStatusService.Status status) {
+                updateAddUI(status.isWhitelisted());
+            }
+
+            @Override
+            public void onError(@NonNull Exception exception) {
+            }
+        });
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        if (whiteListCheckAsyncTask != null && !whiteListCheckAsyncTask.isCancelled()) {
-            whiteListCheckAsyncTask.cancel(true);
+        if (whiteListCheckHandle != null) {
+            whiteListCheckHandle.cancel();
+            whiteListCheckHandle = null;
+        }
+        if (previewPrefetcher != null) {
+            previewPrefetcher.cancel();
         }
     }
 
+    @Override
+    protected void onAddStickerPackResolving(@NonNull String identifier, boolean resolving) {
+        addButton.setEnabled(!resolving);
+        addButton.setAlpha(resolving ? RESOLVING_ADD_BUTTON_ALPHA : 1f);
+    }
+
     private void updateAddUI(Boolean isWhitelisted) {
         if (isWhitelisted) {
             addButton.setVisibility(View.GONE);
@@ -185,30 +216,4 @@ public class StickerPackDetailsActivity extends AddStickerPackActivity {
             findViewById(R.id.sticker_pack_details_tap_to_preview).setVisibility(View.VISIBLE);
         }
     }
-
-    static class WhiteListCheckAsyncTask extends AsyncTask<StickerPack, Void, Boolean> {
-        private final WeakReference<StickerPackDetailsActivity> stickerPackDetailsActivityWeakReference;
-
-        WhiteListCheckAsyncTask(StickerPackDetailsActivity stickerPackListActivity) {
-            this.stickerPackDetailsActivityWeakReference = new WeakReference<>(stickerPackListActivity);
-        }
-
-        @Override
-        protected final Boolean doInBackground(StickerPack... stickerPacks) {
-            StickerPack stickerPack = stickerPacks[0];
-            final StickerPackDetailsActivity stickerPackDetailsActivity = stickerPackDetailsActivityWeakReference.get();
-            if (stickerPackDetailsActivity == null) {
-                return false;
-            }
-            return WhitelistCheck.isWhitelisted(stickerPackDetailsActivity, stickerPack.identifier);
-        }
-
-        @Override
-        protected void onPostExecute(Boolean isWhitelisted) {
-            final StickerPackDetailsActivity stickerPackDetailsActivity = stickerPackDetailsActivityWeakReference.get();
-            if (stickerPackDetailsActivity != null) {
-                stickerPackDetailsActivity.updateAddUI(isWhitelisted);
-            }
-        }
-    }
 }
@@ -8,26 +8,35 @@
 
 package com.example.samplestickerapp;
 
-import android.os.AsyncTask;
+import android.content.Context;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
 
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.SimpleItemAnimator;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
-public class StickerPackListActivity extends AddStickerPackActivity {
+public class StickerPackListActivity extends AddStickerPackActivity implements StickerPackLoadPipeline.Listener {
     public static final String EXTRA_STICKER_PACK_LIST_DATA = "sticker_pack_list";
     private static final int STICKER_PREVIEW_DISPLAY_LIMIT = 5;
+    private static final int PREFETCH_MAX_LOOKAHEAD_ROWS = 6;
+    private static final long PREFETCH_BYTE_BUDGET = 4 * 1024 * 1024;
     private LinearLayoutManager packLayoutManager;
     private RecyclerView packRecyclerView;
     private StickerPackListAdapter allStickerPacksListAdapter;
-    private WhiteListCheckAsyncTask whiteListCheckAsyncTask;
+    private StickerPreviewPrefetcher previewPrefetcher;
+    private TaskScheduler.Handle<List<StickerPack>> whiteListCheckHandle;
     private ArrayList<StickerPack> stickerPackList;
 
     @Override
@@ -40,27 +49,134 @@ public class StickerPackListActivity extends AddStickerPackActivity {
         if (getSupportActionBar() != null) {
             getSupportActionBar().setTitle(getResources().getQuantityString(R.plurals.title_activity_sticker_packs_list, stickerPackList.size()));
         }
+        //the packs from the intent are replaced by the loaded ones, which get their verdicts while they are shown.
+        final StickerPackLoadPipeline stickerPackLoadPipeline = StickerPackLoadPipeline.getInstance();
+        stickerPackLoadPipeline.addListener(this);
+        stickerPackLoadPipeline.start(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        StickerPackLoadPipeline.getInstance().removeListener(this);
+    }
+
+    @Override
+    public void onStickerPacksFetched(@NonNull List<StickerPack> stickerPackList) {
+        final List<StickerPack> previousStickerPackList = this.stickerPackList;
+        this.stickerPackList = new ArrayList<>(stickerPackList);
+        //the loaded packs are new objects, they keep the whitelist state already known for the same identifiers.
+        copyWhitelistStates(previousStickerPackList);
+        allStickerPacksListAdapter.setStickerPackList(this.stickerPackList);
+        allStickerPacksListAdapter.notifyDataSetChanged();
+    }
 
+    @Override
+    public void onStickerPackValidated(int index, @NonNull StickerPack stickerPack) {
+        if (index < stickerPackList.size() && stickerPackList.get(index) == stickerPack) {
+            allStickerPacksListAdapter.notifyItemChanged(index);
+        }
+    }
+
+    @Override
+    public void onLoadFailed(@NonNull String errorMessage) {
+        Log.e("StickerPackListActivity", "error fetching sticker packs, " + errorMessage);
+        //the packs from the intent cannot be added or refreshed without the loaded ones, the error replaces them.
+        packRecyclerView.setVisibility(View.GONE);
+        final TextView errorMessageTV = findViewById(R.id.error_message);
+        errorMessageTV.setText(getString(R.string.error_message, errorMessage));
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        whiteListCheckAsyncTask = new WhiteListCheckAsyncTask(this);
-        whiteListCheckAsyncTask.execute(stickerPackList.toArray(new StickerPack[0]));
+        //cached statuses are shown right away, only the packs without one are queried.
+        final WhitelistStatusService whitelistStatusService = WhitelistStatusService.getInstance();
+        final List<StickerPack> stickerPacksToCheck = new ArrayList<>();
+        boolean statusChanged = false;
+        for (StickerPack stickerPack : stickerPackList) {
+            final WhitelistStatusService.Status status = whitelistStatusService.getCachedStatus(stickerPack.identifier);
+            if (status == null) {
+                stickerPacksToCheck.add(stickerPack);
+            } else if (stickerPack.getIsWhitelisted() != status.isWhitelisted()) {
+                stickerPack.setIsWhitelisted(status.isWhitelisted());
+                statusChanged = true;
+            }
+        }
+        if (statusChanged) {
+            allStickerPacksListAdapter.notifyDataSetChanged();
+        }
+        if (!stickerPacksToCheck.isEmpty()) {
+            whiteListCheckHandle = checkWhitelist(stickerPacksToCheck);
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        if (whiteListCheckAsyncTask != null && !whiteListCheckAsyncTask.isCancelled()) {
-            whiteListCheckAsyncTask.cancel(true);
+        if (whiteListCheckHandle != null) {
+            whiteListCheckHandle.cancel();
+            whiteListCheckHandle = null;
+        }
+        previewPrefetcher.cancel();
+    }
+
+    @NonNull
+    private TaskScheduler.Handle<List<StickerPack>> checkWhitelist(@NonNull List<StickerPack> stickerPacks) {
+        final Context context = getApplicationContext();
+        return TaskScheduler.getInstance().submit(TaskScheduler.Lane.IPC, null, cancellationToken -> {
+            final List<String> identifiers = new ArrayList<>(stickerPacks.size());
+            for (StickerPack stickerPack : stickerPacks) {
+                identifiers.add(stickerPack.identifier);
+            }
+            final Map<String, WhitelistStatusService.Status> statuses = WhitelistStatusService.getInstance().getStatuses(context, identifiers);
+            cancellationToken.throwIfCancelled();
+            for (StickerPack stickerPack : stickerPacks) {
+                //a pack that timed out keeps its previous state, and is checked again on the next resume.
+                final WhitelistStatusService.Status status = statuses.get(stickerPack.identifier);
+                if (status != null) {
+                    stickerPack.setIsWhitelisted(status.isWhitelisted());
+                }
+            }
+            return stickerPacks;
+        }, new TaskScheduler.Callback<List<StickerPack>>() {
+            @Override
+            public void onResult(List<StickerPack> checkedStickerPacks) {
+                //the checked packs may have been replaced by the loaded ones in the meantime.
+                copyWhitelistStates(checkedStickerPacks);
+                allStickerPacksListAdapter.notifyDataSetChanged();
+            }
+
+            @Override
+            public void onError(@NonNull Exception exception) {
+            }
+        });
+    }
+
+    /**
+     * Sets the whitelist state of the shown packs from the packs with the same identifiers.
+     */
+    private void copyWhitelistStates(@NonNull List<StickerPack> fromStickerPacks) {
+        final Map<String, StickerPack> stickerPacksByIdentifier = new HashMap<>(fromStickerPacks.size() * 2);
+        for (StickerPack stickerPack : fromStickerPacks) {
+            stickerPacksByIdentifier.put(stickerPack.identifier, stickerPack);
+        }
+        for (StickerPack stickerPack : stickerPackList) {
+            final StickerPack fromStickerPack = stickerPacksByIdentifier.get(stickerPack.identifier);
+            if (fromStickerPack != null && fromStickerPack != stickerPack) {
+                stickerPack.setIsWhitelisted(fromStickerPack.getIsWhitelisted());
+            }
         }
     }
 
     private void showStickerPackList(List<StickerPack> stickerPackList) {
-        allStickerPacksListAdapter = new StickerPackListAdapter(stickerPackList, onAddButtonClickedListener);
+        allStickerPacksListAdapter = new StickerPackListAdapter(stickerPackList, STICKER_PREVIEW_DISPLAY_LIMIT, onAddButtonClickedListener);
         packRecyclerView.setAdapter(allStickerPacksListAdapter);
+        //a verdict or whitelist update rebinds the row in place, instead of cross fading with a second row.
+        final RecyclerView.ItemAnimator itemAnimator = packRecyclerView.getItemAnimator();
+        if (itemAnimator instanceof SimpleItemAnimator) {
+            ((SimpleItemAnimator) itemAnimator).setSupportsChangeAnimations(false);
+        }
         packLayoutManager = new LinearLayoutManager(this);
         packLayoutManager.setOrientation(RecyclerView.VERTICAL);
         DividerItemDecoration dividerItemDecoration = new DividerItemDecoration(
@@ -69,12 +185,21 @@ public class StickerPackListActivity extends AddStickerPackActivity {
         );
         packRecyclerView.addItemDecoration(dividerItemDecoration);
         packRecyclerView.setLayoutManager(packLayoutManager);
+        previewPrefetcher = new StickerPreviewPrefetcher(packLayoutManager, allStickerPacksListAdapter, getResources().getDimensionPixelSize(R.dimen.sticker_pack_list_item_preview_image_size), PREFETCH_MAX_LOOKAHEAD_ROWS, PREFETCH_BYTE_BUDGET);
+        packRecyclerView.addOnScrollListener(previewPrefetcher);
         packRecyclerView.getViewTreeObserver().addOnGlobalLayoutListener(this::recalculateColumnCount);
     }
 
 
     private final StickerPackListAdapter.OnAddButtonClickedListener onAddButtonClickedListener = pack -> addStickerPackToWhatsApp(pack.identifier, pack.name);
 
+    @Override
+    protected void onAddStickerPackResolving(@NonNull String identifier, boolean resolving) {
+        if (allStickerPacksListAdapter != null) {
+            allStickerPacksListAdapter.setResolvingIdentifier(resolving ? identifier : null);
+        }
+    }
+
 
     private void recalculateColumnCount() {
         final int previewSize = getResources().getDimensionPixelSize(R.dimen.sticker_pack_list_item_preview_image_size);
@@ -88,34 +213,4 @@ public class StickerPackListActivity extends AddStickerPackActivity {
             allStickerPacksListAdapter.setImageRowSpec(maxNumberOfImagesInARow, minMarginBetweenImages);
         }
     }
-
-
-    static class WhiteListCheckAsyncTask extends AsyncTask<StickerPack, Void, List<StickerPack>> {
-        private final WeakReference<StickerPackListActivity> stickerPackListActivityWeakReference;
-
-        WhiteListCheckAsyncTask(StickerPackListActivity stickerPackListActivity) {
-            this.stickerPackListActivityWeakReference = new WeakReference<>(stickerPackListActivity);
-        }
-
-        @Override
-        protected final List<StickerPack> doInBackground(StickerPack... stickerPackArray) {
-            final StickerPackListActivity stickerPackListActivity = stickerPackListActivityWeakReference.get();
-            if (stickerPackListActivity == null) {
-                return Arrays.asList(stickerPackArray);
-            }
-            for (StickerPack stickerPack : stickerPackArray) {
-                stickerPack.setIsWhitelisted(WhitelistCheck.isWhitelisted(stickerPackListActivity, stickerPack.identifier));
-            }
-            return Arrays.asList(stickerPackArray);
-        }
-
-        @Override
-        protected void onPostExecute(List<StickerPack> stickerPackList) {
-            final StickerPackListActivity stickerPackListActivity = stickerPackListActivityWeakReference.get();
-            if (stickerPackListActivity != null) {
-                stickerPackListActivity.allStickerPacksListAdapter.setStickerPackList(stickerPackList);
-                stickerPackListActivity.allStickerPacksListAdapter.notifyDataSetChanged();
-            }
-        }
-    }
 }
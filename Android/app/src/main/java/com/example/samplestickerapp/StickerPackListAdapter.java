@@ -11,6 +11,7 @@ package com.example.samplestickerapp;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Build;
 import android.text.format.Formatter;
 import android.util.TypedValue;
@@ -21,22 +22,32 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.facebook.drawee.view.SimpleDraweeView;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-public class StickerPackListAdapter extends RecyclerView.Adapter<StickerPackListItemViewHolder> {
+public class StickerPackListAdapter extends RecyclerView.Adapter<StickerPackListItemViewHolder> implements StickerPreviewPrefetcher.PreviewSource {
+    private static final float RESOLVING_ADD_BUTTON_ALPHA = 0.5f;
+
     @NonNull
     private List<StickerPack> stickerPacks;
     @NonNull
     private final OnAddButtonClickedListener onAddButtonClickedListener;
+    private final int maxPreviewImageCount;
     private int maxNumberOfStickersInARow;
     private int minMarginBetweenImages;
+    //the pack whose whitelist status is resolving after its add button was tapped.
+    @Nullable
+    private String resolvingIdentifier;
 
-    StickerPackListAdapter(@NonNull List<StickerPack> stickerPacks, @NonNull OnAddButtonClickedListener onAddButtonClickedListener) {
+    StickerPackListAdapter(@NonNull List<StickerPack> stickerPacks, int maxPreviewImageCount, @NonNull OnAddButtonClickedListener onAddButtonClickedListener) {
         this.stickerPacks = stickerPacks;
+        this.maxPreviewImageCount = maxPreviewImageCount;
         this.onAddButtonClickedListener = onAddButtonClickedListener;
     }
 
@@ -46,7 +57,7 @@ public class StickerPackListAdapter extends RecyclerView.Adapter<StickerPackList
         final Context context = viewGroup.getContext();
         final LayoutInflater layoutInflater = LayoutInflater.from(context);
         final View stickerPackRow = layoutInflater.inflate(R.layout.sticker_packs_list_item, viewGroup, false);
-        return new StickerPackListItemViewHolder(stickerPackRow);
+        return new StickerPackListItemViewHolder(stickerPackRow, maxPreviewImageCount);
     }
 
     @Override
@@ -57,28 +68,78 @@ public class StickerPackListAdapter extends RecyclerView.Adapter<StickerPackList
         viewHolder.filesizeView.setText(Formatter.formatShortFileSize(context, pack.getTotalSize()));
 
         viewHolder.titleView.setText(pack.name);
+        viewHolder.animatedStickerPackIndicator.setVisibility(pack.animatedStickerPack ? View.VISIBLE : View.GONE);
+        if (pack.isValidated() && !pack.isValid()) {
+            //invalid packs are shown with their error, and cannot be opened or added.
+            viewHolder.errorMessageView.setVisibility(View.VISIBLE);
+            viewHolder.errorMessageView.setText(context.getString(R.string.sticker_pack_list_item_invalid, pack.getValidationError()));
+            viewHolder.container.setOnClickListener(null);
+            viewHolder.container.setClickable(false);
+            viewHolder.addButton.setVisibility(View.GONE);
+            bindPreviewImages(viewHolder, pack, 0);
+            return;
+        }
+        viewHolder.errorMessageView.setVisibility(View.GONE);
+        viewHolder.addButton.setVisibility(View.VISIBLE);
         viewHolder.container.setOnClickListener(view -> {
             Intent intent = new Intent(view.getContext(), StickerPackDetailsActivity.class);
             intent.putExtra(StickerPackDetailsActivity.EXTRA_SHOW_UP_BUTTON, true);
             intent.putExtra(StickerPackDetailsActivity.EXTRA_STICKER_PACK_DATA, pack);
             view.getContext().startActivity(intent);
         });
-        viewHolder.imageRowView.removeAllViews();
         //if this sticker pack contains less stickers than the max, then take the smaller size.
-        int actualNumberOfStickersToShow = Math.min(maxNumberOfStickersInARow, pack.getStickers().size());
-        for (int i = 0; i < actualNumberOfStickersToShow; i++) {
-            final SimpleDraweeView rowImage = (SimpleDraweeView) LayoutInflater.from(context).inflate(R.layout.sticker_packs_list_image_item, viewHolder.imageRowView, false);
-            rowImage.setImageURI(StickerPackLoader.getStickerAssetUri(pack.identifier, pack.getStickers().get(i).imageFileName));
+        bindPreviewImages(viewHolder, pack, Math.min(maxNumberOfStickersInARow, pack.getStickers().size()));
+        setAddButtonAppearance(viewHolder.addButton, pack);
+        //packs are added once their validation passed, and one at a time.
+        final boolean resolving = pack.identifier.equals(resolvingIdentifier);
+        viewHolder.addButton.setEnabled(pack.isValid() && !resolving);
+        viewHolder.addButton.setAlpha(resolving ? RESOLVING_ADD_BUTTON_ALPHA : 1f);
+    }
+
+    void setResolvingIdentifier(@Nullable String resolvingIdentifier) {
+        final String previousIdentifier = this.resolvingIdentifier;
+        this.resolvingIdentifier = resolvingIdentifier;
+        for (int i = 0; i < stickerPacks.size(); i++) {
+            final String identifier = stickerPacks.get(i).identifier;
+            if (identifier.equals(previousIdentifier) || identifier.equals(resolvingIdentifier)) {
+                notifyItemChanged(i);
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<Uri> getPreviewUris(int position) {
+        final StickerPack pack = stickerPacks.get(position);
+        if (pack.isValidated() && !pack.isValid()) {
+            return Collections.emptyList();
+        }
+        final int numberOfStickersToShow = Math.min(maxNumberOfStickersInARow, pack.getStickers().size());
+        final List<Uri> previewUris = new ArrayList<>(numberOfStickersToShow);
+        for (int i = 0; i < numberOfStickersToShow; i++) {
+            previewUris.add(StickerPackLoader.getStickerThumbnailUri(pack.identifier, pack.getStickers().get(i).imageFileName));
+        }
+        return previewUris;
+    }
+
+    private void bindPreviewImages(@NonNull StickerPackListItemViewHolder viewHolder, @NonNull StickerPack pack, int numberOfStickersToShow) {
+        for (int i = 0; i < viewHolder.previewImageViews.size(); i++) {
+            final SimpleDraweeView rowImage = viewHolder.previewImageViews.get(i);
+            if (i >= numberOfStickersToShow) {
+                rowImage.setVisibility(View.GONE);
+                continue;
+            }
+            rowImage.setVisibility(View.VISIBLE);
+            StickerPreviewRequests.setPreviewImage(rowImage, StickerPackLoader.getStickerThumbnailUri(pack.identifier, pack.getStickers().get(i).imageFileName), viewHolder.previewImageSize);
             final LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) rowImage.getLayoutParams();
-            final int marginBetweenImages = minMarginBetweenImages - lp.leftMargin - lp.rightMargin;
-            if (i != actualNumberOfStickersToShow - 1 && marginBetweenImages > 0) { //do not set the margin for the last image
-                lp.setMargins(lp.leftMargin, lp.topMargin, lp.rightMargin + marginBetweenImages, lp.bottomMargin);
+            final int marginBetweenImages = minMarginBetweenImages - lp.leftMargin - viewHolder.previewImageRightMargin;
+            //do not set the margin for the last image
+            final int rightMargin = i != numberOfStickersToShow - 1 && marginBetweenImages > 0 ? viewHolder.previewImageRightMargin + marginBetweenImages : viewHolder.previewImageRightMargin;
+            if (lp.rightMargin != rightMargin) {
+                lp.setMargins(lp.leftMargin, lp.topMargin, rightMargin, lp.bottomMargin);
                 rowImage.setLayoutParams(lp);
             }
-            viewHolder.imageRowView.addView(rowImage);
         }
-        setAddButtonAppearance(viewHolder.addButton, pack);
-        viewHolder.animatedStickerPackIndicator.setVisibility(pack.animatedStickerPack ? View.VISIBLE : View.GONE);
     }
 
     private void setAddButtonAppearance(ImageView addButton, StickerPack pack) {
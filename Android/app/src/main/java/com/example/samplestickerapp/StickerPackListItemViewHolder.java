@@ -8,6 +8,7 @@
 
 package com.example.samplestickerapp;
 
+import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
@@ -15,24 +16,45 @@ import android.widget.TextView;
 
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.facebook.drawee.view.SimpleDraweeView;
+
+import java.util.ArrayList;
+import java.util.List;
+
 class StickerPackListItemViewHolder extends RecyclerView.ViewHolder {
 
     final View container;
     final TextView titleView;
     final TextView publisherView;
     final TextView filesizeView;
+    final TextView errorMessageView;
     final ImageView addButton;
     final ImageView animatedStickerPackIndicator;
     final LinearLayout imageRowView;
+    //created once with the row, the binds only show, hide and point them to stickers.
+    final List<SimpleDraweeView> previewImageViews;
+    final int previewImageRightMargin;
+    final int previewImageSize;
 
-    StickerPackListItemViewHolder(final View itemView) {
+    StickerPackListItemViewHolder(final View itemView, int previewImageCount) {
         super(itemView);
         container = itemView;
         titleView = itemView.findViewById(R.id.sticker_pack_title);
         publisherView = itemView.findViewById(R.id.sticker_pack_publisher);
         filesizeView = itemView.findViewById(R.id.sticker_pack_filesize);
+        errorMessageView = itemView.findViewById(R.id.sticker_pack_error_message);
         addButton = itemView.findViewById(R.id.add_button_on_list);
         imageRowView = itemView.findViewById(R.id.sticker_packs_list_item_image_list);
         animatedStickerPackIndicator = itemView.findViewById(R.id.sticker_pack_animation_indicator);
+        final LayoutInflater layoutInflater = LayoutInflater.from(itemView.getContext());
+        previewImageViews = new ArrayList<>(previewImageCount);
+        for (int i = 0; i < previewImageCount; i++) {
+            final SimpleDraweeView previewImageView = (SimpleDraweeView) layoutInflater.inflate(R.layout.sticker_packs_list_image_item, imageRowView, false);
+            previewImageView.setVisibility(View.GONE);
+            imageRowView.addView(previewImageView);
+            previewImageViews.add(previewImageView);
+        }
+        previewImageSize = itemView.getResources().getDimensionPixelSize(R.dimen.sticker_pack_list_item_preview_image_size);
+        previewImageRightMargin = previewImageCount == 0 ? 0 : ((LinearLayout.LayoutParams) previewImageViews.get(0).getLayoutParams()).rightMargin;
     }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the sticker packs once per process and publishes them to the screens while they are validated: first the
+ * pack list, then each pack in list order as soon as its verdict is known. Listeners added late are replayed what was
+ * already published. All the methods, and all the listener callbacks, run on the main thread.
+ */
+final class StickerPackLoadPipeline {
+    private static final String TAG = "StickerPackLoadPipeline";
+    private static final StickerPackLoadPipeline INSTANCE = new StickerPackLoadPipeline();
+
+    interface Listener {
+        /**
+         * Called with the pack list before its packs are validated.
+         */
+        void onStickerPacksFetched(@NonNull List<StickerPack> stickerPackList);
+
+        /**
+         * Called for each pack in list order once it has a verdict, see {@link StickerPack#isValid()}.
+         */
+        void onStickerPackValidated(int index, @NonNull StickerPack stickerPack);
+
+        /**
+         * Called if the pack list cannot be fetched.
+         */
+        void onLoadFailed(@NonNull String errorMessage);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private boolean loading;
+    private List<StickerPack> stickerPackList;
+    private int validatedPackCount;
+    private String errorMessage;
+
+    @NonNull
+    static StickerPackLoadPipeline getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts loading the packs, unless they are loading or were loaded. A load that failed is started again.
+     */
+    @MainThread
+    void start(@NonNull Context context) {
+        if (loading || (stickerPackList != null && validatedPackCount == stickerPackList.size())) {
+            return;
+        }
+        loading = true;
+        stickerPackList = null;
+        validatedPackCount = 0;
+        errorMessage = null;
+        final Context appContext = context.getApplicationContext();
+        TaskScheduler.getInstance().submit(TaskScheduler.Lane.UI_CRITICAL, TAG, cancellationToken -> {
+            load(appContext);
+            return null;
+        }, null);
+    }
+
+    /**
+     * Adds the listener, and calls it with what was already published.
+     */
+    @MainThread
+    void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+        if (stickerPackList != null) {
+            listener.onStickerPacksFetched(stickerPackList);
+            for (int i = 0; i < validatedPackCount; i++) {
+                listener.onStickerPackValidated(i, stickerPackList.get(i));
+            }
+        } else if (errorMessage != null) {
+            listener.onLoadFailed(errorMessage);
+        }
+    }
+
+    @MainThread
+    void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void load(@NonNull Context context) {
+        try {
+            StickerPackLoader.loadStickerPacks(context, new StickerPackLoader.LoadListener() {
+                @Override
+                public void onStickerPacksFetched(@NonNull ArrayList<StickerPack> stickerPackList) {
+                    mainHandler.post(() -> publishStickerPacks(stickerPackList));
+                }
+
+                @Override
+                public void onStickerPackValidated(int index, @NonNull StickerPack stickerPack) {
+                    mainHandler.post(() -> publishValidatedStickerPack(index, stickerPack));
+                }
+            });
+            mainHandler.post(() -> loading = false);
+        } catch (Exception e) {
+            Log.e(TAG, "error fetching sticker packs", e);
+            final String message = String.valueOf(e.getMessage());
+            mainHandler.post(() -> publishError(message));
+        }
+    }
+
+    private void publishStickerPacks(@NonNull List<StickerPack> stickerPackList) {
+        this.stickerPackList = stickerPackList;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onStickerPacksFetched(stickerPackList);
+        }
+    }
+
+    private void publishValidatedStickerPack(int index, @NonNull StickerPack stickerPack) {
+        validatedPackCount = index + 1;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onStickerPackValidated(index, stickerPack);
+        }
+    }
+
+    private void publishError(@NonNull String errorMessage) {
+        loading = false;
+        if (stickerPackList != null) {
+            //the packs were published, the ones without a verdict are reported invalid so their rows stop validating.
+            for (int i = validatedPackCount; i < stickerPackList.size(); i++) {
+                final StickerPack stickerPack = stickerPackList.get(i);
+                if (!stickerPack.isValidated()) {
+                    stickerPack.setValidationResult(errorMessage);
+                }
+                publishValidatedStickerPack(i, stickerPack);
+            }
+            return;
+        }
+        this.errorMessage = errorMessage;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onLoadFailed(errorMessage);
+        }
+    }
+}
@@ -10,15 +10,21 @@ package com.example.samplestickerapp;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -36,24 +42,58 @@ import static com.example.samplestickerapp.StickerContentProvider.PUBLISHER_WEBS
 import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY;
 import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_EMOJI_IN_QUERY;
 import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_NAME_IN_QUERY;
+import static com.example.samplestickerapp.StickerContentProvider.STICKER_FILE_SIZE_IN_QUERY;
 import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_ICON_IN_QUERY;
 import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_IDENTIFIER_IN_QUERY;
 import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_NAME_IN_QUERY;
 import static com.example.samplestickerapp.StickerContentProvider.STICKER_PACK_PUBLISHER_IN_QUERY;
 
 class StickerPackLoader {
+    private static final String TAG = "StickerPackLoader";
+
+    private static volatile int lastSkippedStickerCount;
+    private static volatile int lastCheckedStickerCount;
+
+    interface LoadListener {
+        /**
+         * Called on the loading thread once the pack list is fetched, before the packs are validated.
+         */
+        void onStickerPacksFetched(@NonNull ArrayList<StickerPack> stickerPackList);
+
+        /**
+         * Called on the loading thread for each pack in list order, once its validation verdict is known.
+         */
+        void onStickerPackValidated(int index, @NonNull StickerPack stickerPack);
+    }
 
     /**
-     * Get the list of sticker packs for the sticker content provider
+     * Gets the list of sticker packs and validates them. An invalid pack does not fail the load, its verdict is kept
+     * in the pack instead, see {@link StickerPack#getValidationError()}.
+     *
+     * @throws IllegalStateException if the pack list cannot be fetched.
      */
     @NonNull
-    static ArrayList<StickerPack> fetchStickerPacks(Context context) throws IllegalStateException {
-        final Cursor cursor = context.getContentResolver().query(StickerContentProvider.AUTHORITY_URI, null, null, null, null);
-        if (cursor == null) {
-            throw new IllegalStateException("could not fetch from content provider, " + BuildConfig.CONTENT_PROVIDER_AUTHORITY);
+    static ArrayList<StickerPack> loadStickerPacks(@NonNull Context context, @Nullable LoadListener loadListener) throws IllegalStateException {
+        final ValidatedStickerPackCache validatedStickerPackCache = ValidatedStickerPackCache.load(context);
+        final ArrayList<StickerPack> cachedStickerPackList = validatedStickerPackCache.getStickerPacksIfAppNotUpdated();
+        if (cachedStickerPackList != null) {
+            reportValidatedStickers(countStickers(cachedStickerPackList), 0);
+            if (loadListener != null) {
+                loadListener.onStickerPacksFetched(cachedStickerPackList);
+                reportValidatedPacks(cachedStickerPackList, 0, loadListener);
+            }
+            return cachedStickerPackList;
+        }
+        ArrayList<StickerPack> stickerPackList = fetchFromContentProviderCall(context.getContentResolver());
+        final boolean stickerSizesFetched = stickerPackList != null;
+        if (stickerPackList == null) {
+            final Cursor cursor = context.getContentResolver().query(StickerContentProvider.AUTHORITY_URI, null, null, null, null);
+            if (cursor == null) {
+                throw new IllegalStateException("could not fetch from content provider, " + BuildConfig.CONTENT_PROVIDER_AUTHORITY);
+            }
+            stickerPackList = fetchFromContentProvider(cursor);
         }
         HashSet<String> identifierSet = new HashSet<>();
-        final ArrayList<StickerPack> stickerPackList = fetchFromContentProvider(cursor);
         for (StickerPack stickerPack : stickerPackList) {
             if (identifierSet.contains(stickerPack.identifier)) {
                 throw new IllegalStateException("sticker pack identifiers should be unique, there are more than one pack with identifier:" + stickerPack.identifier);
@@ -64,25 +104,126 @@ class StickerPackLoader {
         if (stickerPackList.isEmpty()) {
             throw new IllegalStateException("There should be at least one sticker pack in the app");
         }
+        final List<StickerPack> stickerPacksToValidate = new ArrayList<>();
+        int skippedStickerCount = 0;
         for (StickerPack stickerPack : stickerPackList) {
-            final List<Sticker> stickers = getStickersForPack(context, stickerPack);
-            stickerPack.setStickers(stickers);
-            StickerPackValidator.verifyStickerPackValidity(context, stickerPack);
+            try {
+                if (stickerSizesFetched) {
+                    checkStickerSizes(stickerPack);
+                } else {
+                    final List<Sticker> stickers = getStickersForPack(context, stickerPack);
+                    stickerPack.setStickers(stickers);
+                }
+            } catch (IllegalStateException e) {
+                if (stickerPack.getStickers() == null) {
+                    stickerPack.setStickers(new ArrayList<>());
+                }
+                stickerPack.setValidationResult(String.valueOf(e.getMessage()));
+                continue;
+            }
+            if (validatedStickerPackCache.isValidated(stickerPack)) {
+                stickerPack.setValidationResult(null);
+                skippedStickerCount += stickerPack.getStickers().size();
+            } else {
+                stickerPacksToValidate.add(stickerPack);
+            }
+        }
+        if (loadListener != null) {
+            loadListener.onStickerPacksFetched(stickerPackList);
         }
+        final ArrayList<StickerPack> finalStickerPackList = stickerPackList;
+        final int[] nextPackToReport = {loadListener == null ? 0 : reportValidatedPacks(stickerPackList, 0, loadListener)};
+        StickerPackValidationEngine.validate(context, stickerPacksToValidate, validatedStickerPackCache, packResult -> {
+            if (loadListener != null) {
+                nextPackToReport[0] = reportValidatedPacks(finalStickerPackList, nextPackToReport[0], loadListener);
+            }
+        });
+        reportValidatedStickers(skippedStickerCount + validatedStickerPackCache.getSkippedStickerCount(), validatedStickerPackCache.getCheckedStickerCount());
+        validatedStickerPackCache.save(stickerPackList);
         return stickerPackList;
     }
 
+    /**
+     * Reports the packs from the given index on that already have a verdict, and stops at the first pack without one.
+     *
+     * @return the index of the first pack that was not reported.
+     */
+    private static int reportValidatedPacks(@NonNull List<StickerPack> stickerPackList, int fromIndex, @NonNull LoadListener loadListener) {
+        int index = fromIndex;
+        while (index < stickerPackList.size() && stickerPackList.get(index).isValidated()) {
+            loadListener.onStickerPackValidated(index, stickerPackList.get(index));
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return how many sticker files the last {@link #loadStickerPacks(Context, LoadListener)} did not check, because
+     * they passed validation before and did not change.
+     */
+    static int getLastSkippedStickerCount() {
+        return lastSkippedStickerCount;
+    }
+
+    /**
+     * @return how many sticker files the last {@link #loadStickerPacks(Context, LoadListener)} checked, because they
+     * are new or changed.
+     */
+    static int getLastCheckedStickerCount() {
+        return lastCheckedStickerCount;
+    }
+
+    private static void reportValidatedStickers(int skippedStickerCount, int checkedStickerCount) {
+        lastSkippedStickerCount = skippedStickerCount;
+        lastCheckedStickerCount = checkedStickerCount;
+        Log.d(TAG, "sticker files checked: " + checkedStickerCount + ", skipped: " + skippedStickerCount);
+    }
+
+    private static int countStickers(@NonNull List<StickerPack> stickerPackList) {
+        int stickerCount = 0;
+        for (StickerPack stickerPack : stickerPackList) {
+            stickerCount += stickerPack.getStickers().size();
+        }
+        return stickerCount;
+    }
+
+    /**
+     * Fetches all the packs, with their stickers and sticker sizes, with a single call to the content provider.
+     *
+     * @return null if the content provider does not support the call.
+     */
+    @Nullable
+    private static ArrayList<StickerPack> fetchFromContentProviderCall(ContentResolver contentResolver) {
+        final Bundle bundle = contentResolver.call(StickerContentProvider.AUTHORITY_URI, StickerContentProvider.METHOD_GET_STICKER_PACKS, null, null);
+        if (bundle == null) {
+            return null;
+        }
+        bundle.setClassLoader(StickerPack.class.getClassLoader());
+        return bundle.getParcelableArrayList(StickerContentProvider.KEY_STICKER_PACK_LIST);
+    }
+
+    private static void checkStickerSizes(StickerPack stickerPack) {
+        for (Sticker sticker : stickerPack.getStickers()) {
+            if (sticker.size <= 0) {
+                throw new IllegalStateException("Asset file is empty or doesn't exist, pack: " + stickerPack.name + ", sticker: " + sticker.imageFileName);
+            }
+        }
+    }
+
     @NonNull
     private static List<Sticker> getStickersForPack(Context context, StickerPack stickerPack) {
         final List<Sticker> stickers = fetchFromContentProviderForStickers(stickerPack.identifier, context.getContentResolver());
         for (Sticker sticker : stickers) {
-            final byte[] bytes;
+            if (sticker.size > 0) {
+                //already provided by the sticker_file_size column.
+                continue;
+            }
             try {
-                bytes = fetchStickerAsset(stickerPack.identifier, sticker.imageFileName, context.getContentResolver());
-                if (bytes.length <= 0) {
+                final long length = fetchStickerAssetLength(stickerPack.identifier, sticker.imageFileName, context.getContentResolver());
+                if (length <= 0) {
                     throw new IllegalStateException("Asset file is empty, pack: " + stickerPack.name + ", sticker: " + sticker.imageFileName);
                 }
-                sticker.setSize(bytes.length);
+                sticker.setSize(length);
             } catch (IOException | IllegalArgumentException e) {
                 throw new IllegalStateException("Asset file doesn't exist. pack: " + stickerPack.name + ", sticker: " + sticker.imageFileName, e);
             }
@@ -121,7 +262,7 @@ class StickerPackLoader {
     private static List<Sticker> fetchFromContentProviderForStickers(String identifier, ContentResolver contentResolver) {
         Uri uri = getStickerListUri(identifier);
 
-        final String[] projection = {STICKER_FILE_NAME_IN_QUERY, STICKER_FILE_EMOJI_IN_QUERY, STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY};
+        final String[] projection = {STICKER_FILE_NAME_IN_QUERY, STICKER_FILE_EMOJI_IN_QUERY, STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY, STICKER_FILE_SIZE_IN_QUERY};
         final Cursor cursor = contentResolver.query(uri, projection, null, null, null);
         List<Sticker> stickers = new ArrayList<>();
         if (cursor != null && cursor.getCount() > 0) {
@@ -130,11 +271,17 @@ class StickerPackLoader {
                 final String name = cursor.getString(cursor.getColumnIndexOrThrow(STICKER_FILE_NAME_IN_QUERY));
                 final String emojisConcatenated = cursor.getString(cursor.getColumnIndexOrThrow(STICKER_FILE_EMOJI_IN_QUERY));
                 final String accessibilityText = cursor.getString(cursor.getColumnIndexOrThrow(STICKER_FILE_ACCESSIBILITY_TEXT_IN_QUERY));
+                final int fileSizeColumnIndex = cursor.getColumnIndex(STICKER_FILE_SIZE_IN_QUERY);
                 List<String> emojis = new ArrayList<>(StickerPackValidator.EMOJI_MAX_LIMIT);
                 if (!TextUtils.isEmpty(emojisConcatenated)) {
                     emojis = Arrays.asList(emojisConcatenated.split(","));
                 }
-                stickers.add(new Sticker(name, emojis, accessibilityText));
+                final Sticker sticker = new Sticker(name, emojis, accessibilityText);
+                //the file size column is optional, the size is resolved from the asset descriptor when it is missing.
+                if (fileSizeColumnIndex >= 0 && !cursor.isNull(fileSizeColumnIndex)) {
+                    sticker.setSize(cursor.getLong(fileSizeColumnIndex));
+                }
+                stickers.add(sticker);
             } while (cursor.moveToNext());
         }
         if (cursor != null) {
@@ -144,19 +291,127 @@ class StickerPackLoader {
     }
 
     static byte[] fetchStickerAsset(@NonNull final String identifier, @NonNull final String name, ContentResolver contentResolver) throws IOException {
-        try (final InputStream inputStream = contentResolver.openInputStream(getStickerAssetUri(identifier, name));
-             final ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-            if (inputStream == null) {
+        try (final AssetFileDescriptor assetFileDescriptor = contentResolver.openAssetFileDescriptor(getStickerAssetUri(identifier, name), "r")) {
+            if (assetFileDescriptor == null) {
                 throw new IOException("cannot read sticker asset:" + identifier + "/" + name);
             }
-            int read;
-            byte[] data = new byte[16384];
+            final long length = assetFileDescriptor.getLength();
+            try (final InputStream inputStream = assetFileDescriptor.createInputStream()) {
+                if (length == AssetFileDescriptor.UNKNOWN_LENGTH) {
+                    return readStream(inputStream);
+                }
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("sticker asset is too big:" + identifier + "/" + name);
+                }
+                //the length is known, so the asset is read once into an array of its size.
+                final byte[] bytes = new byte[(int) length];
+                if (readFully(inputStream, bytes, 0) != bytes.length) {
+                    throw new IOException("sticker asset is shorter than its length:" + identifier + "/" + name);
+                }
+                return bytes;
+            }
+        }
+    }
+
+    /**
+     * Reads a stream of unknown length, for example a pipe, into pooled scratch arrays and copies it once into an
+     * array of its size.
+     */
+    @NonNull
+    private static byte[] readStream(@NonNull InputStream inputStream) throws IOException {
+        final StickerAssetBufferPool bufferPool = StickerAssetBufferPool.getInstance();
+        byte[] buffer = bufferPool.acquire(StickerAssetBufferPool.SMALL_BUFFER_SIZE);
+        try {
+            int length = readFully(inputStream, buffer, 0);
+            while (length == buffer.length) {
+                final int next = inputStream.read();
+                if (next == -1) {
+                    break;
+                }
+                //animated stickers do not fit in the small array, grow to the next size.
+                final byte[] biggerBuffer = bufferPool.acquire(buffer.length * 2);
+                System.arraycopy(buffer, 0, biggerBuffer, 0, length);
+                bufferPool.release(buffer);
+                buffer = biggerBuffer;
+                buffer[length++] = (byte) next;
+                length = readFully(inputStream, buffer, length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
 
-            while ((read = inputStream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, read);
+    /**
+     * @return the offset after the last byte read, less than the array length if the stream ended.
+     */
+    private static int readFully(@NonNull InputStream inputStream, @NonNull byte[] buffer, int offset) throws IOException {
+        while (offset < buffer.length) {
+            final int read = inputStream.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                break;
             }
-            return buffer.toByteArray();
+            offset += read;
         }
+        return offset;
+    }
+
+    /**
+     * Gets the content of a sticker asset without copying it when possible.
+     *
+     * @return the memory mapped asset, see {@link #mapStickerAsset}, or if it cannot be mapped, a buffer wrapping the
+     * bytes read from the provider.
+     */
+    @NonNull
+    static ByteBuffer fetchStickerAssetBuffer(@NonNull final String identifier, @NonNull final String name, ContentResolver contentResolver) throws IOException {
+        final ByteBuffer mappedAsset = mapStickerAsset(identifier, name, contentResolver);
+        if (mappedAsset != null) {
+            return mappedAsset;
+        }
+        return ByteBuffer.wrap(fetchStickerAsset(identifier, name, contentResolver));
+    }
+
+    /**
+     * Maps exactly the region of the asset file descriptor in memory. Pages are only read when they are accessed, so
+     * reading the headers of an asset only reads their pages.
+     *
+     * @return a read only direct buffer, or null if the provider does not give a file with a known length, for
+     * example a pipe.
+     */
+    @Nullable
+    static ByteBuffer mapStickerAsset(@NonNull final String identifier, @NonNull final String name, ContentResolver contentResolver) throws IOException {
+        try (final AssetFileDescriptor assetFileDescriptor = contentResolver.openAssetFileDescriptor(getStickerAssetUri(identifier, name), "r")) {
+            if (assetFileDescriptor == null) {
+                throw new IOException("cannot open sticker asset:" + identifier + "/" + name);
+            }
+            if (assetFileDescriptor.getLength() == AssetFileDescriptor.UNKNOWN_LENGTH) {
+                return null;
+            }
+            try (final FileInputStream inputStream = assetFileDescriptor.createInputStream();
+                 final FileChannel channel = inputStream.getChannel()) {
+                //the mapping stays valid after the channel is closed.
+                return channel.map(FileChannel.MapMode.READ_ONLY, assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength());
+            } catch (IOException e) {
+                //not a regular file, it can only be streamed.
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Gets the size of a sticker asset from its file descriptor, without reading its content. Only reads the asset
+     * when the provider cannot tell the length.
+     */
+    static long fetchStickerAssetLength(@NonNull final String identifier, @NonNull final String name, ContentResolver contentResolver) throws IOException {
+        try (final AssetFileDescriptor assetFileDescriptor = contentResolver.openAssetFileDescriptor(getStickerAssetUri(identifier, name), "r")) {
+            if (assetFileDescriptor == null) {
+                throw new IOException("cannot open sticker asset:" + identifier + "/" + name);
+            }
+            if (assetFileDescriptor.getLength() != AssetFileDescriptor.UNKNOWN_LENGTH) {
+                return assetFileDescriptor.getLength();
+            }
+        }
+        return fetchStickerAsset(identifier, name, contentResolver).length;
     }
 
     private static Uri getStickerListUri(String identifier) {
@@ -166,4 +421,12 @@ class StickerPackLoader {
     static Uri getStickerAssetUri(String identifier, String stickerName) {
         return new Uri.Builder().scheme(ContentResolver.SCHEME_CONTENT).authority(BuildConfig.CONTENT_PROVIDER_AUTHORITY).appendPath(StickerContentProvider.STICKERS_ASSET).appendPath(identifier).appendPath(stickerName).build();
     }
+
+    /**
+     * @return the uri of the small preview of the sticker shown in the pack list, which falls back to the full sticker.
+     * Only this app can read it.
+     */
+    static Uri getStickerThumbnailUri(String identifier, String stickerName) {
+        return new Uri.Builder().scheme(ContentResolver.SCHEME_CONTENT).authority(BuildConfig.CONTENT_PROVIDER_AUTHORITY).appendPath(StickerContentProvider.STICKER_THUMBNAILS).appendPath(identifier).appendPath(stickerName).build();
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the checks of {@link StickerPackValidator} in parallel: the pack level checks and each sticker of each pack are
+ * separate tasks on the {@link TaskScheduler.Lane#VALIDATION} lane, which has a thread per core. Results are collected in pack order, and within a pack
+ * in the order the sequential validator runs its checks, so the reported error does not depend on thread timing.
+ * The result of each pack is kept in the pack, and packs that were already validated are not checked again.
+ * <p>
+ * Cancelling is cooperative: the checks that have not started are skipped, the running ones finish. Interrupting them
+ * would close the asset channels they read with a ClosedByInterruptException.
+ */
+final class StickerPackValidationEngine {
+    interface StickerFileFilter {
+        /**
+         * Called on a validation thread before a sticker is validated.
+         *
+         * @return true if the sticker file is known to be valid, only the sticker data is checked then.
+         */
+        boolean isFileValidated(@NonNull StickerPack stickerPack, @NonNull Sticker sticker);
+    }
+
+    interface PackResultListener {
+        /**
+         * Called on the validating thread for each pack in list order, as soon as the pack and all the packs before
+         * it are validated.
+         */
+        void onPackValidated(@NonNull PackResult packResult);
+    }
+
+    static final class PackResult {
+        @NonNull
+        final StickerPack stickerPack;
+        @Nullable
+        final IllegalStateException error;
+
+        PackResult(@NonNull StickerPack stickerPack, @Nullable IllegalStateException error) {
+            this.stickerPack = stickerPack;
+            this.error = error;
+        }
+
+        boolean isValid() {
+            return error == null;
+        }
+    }
+
+    /**
+     * The checks of one pack, each sticker is a separate task that skips its checks once the pack is cancelled.
+     */
+    private static final class PackTasks {
+        final TaskScheduler.CancellationToken cancellationToken = new TaskScheduler.CancellationToken();
+        final List<Future<?>> futures;
+
+        PackTasks(int taskCount) {
+            this.futures = new ArrayList<>(taskCount);
+        }
+
+        void cancel() {
+            cancellationToken.cancel();
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private StickerPackValidationEngine() {
+    }
+
+    /**
+     * Validates all the packs, skipping the file checks of the stickers accepted by the filter, and reports each pack
+     * to the listener as soon as its result is known.
+     */
+    @NonNull
+    static List<PackResult> validate(@NonNull Context context, @NonNull List<StickerPack> stickerPackList, @Nullable StickerFileFilter stickerFileFilter, @Nullable PackResultListener packResultListener) {
+        final List<PackTasks> packTasks = submit(context, stickerPackList, stickerFileFilter);
+        final List<PackResult> results = new ArrayList<>(stickerPackList.size());
+        try {
+            for (int i = 0; i < stickerPackList.size(); i++) {
+                final PackResult packResult = new PackResult(stickerPackList.get(i), awaitResult(stickerPackList.get(i), packTasks.get(i)));
+                results.add(packResult);
+                if (packResultListener != null) {
+                    packResultListener.onPackValidated(packResult);
+                }
+            }
+        } finally {
+            for (PackTasks tasks : packTasks) {
+                tasks.cancel();
+            }
+        }
+        return results;
+    }
+
+    @NonNull
+    private static List<PackTasks> submit(@NonNull Context context, @NonNull List<StickerPack> stickerPackList, @Nullable StickerFileFilter stickerFileFilter) {
+        final Context appContext = context.getApplicationContext();
+        final ExecutorService executorService = TaskScheduler.getInstance().getExecutor(TaskScheduler.Lane.VALIDATION);
+        final List<PackTasks> packTasks = new ArrayList<>(stickerPackList.size());
+        for (final StickerPack stickerPack : stickerPackList) {
+            if (stickerPack.isValidated()) {
+                packTasks.add(new PackTasks(0));
+                continue;
+            }
+            final List<Sticker> stickers = stickerPack.getStickers();
+            final PackTasks tasks = new PackTasks(stickers.size() + 1);
+            final TaskScheduler.CancellationToken cancellationToken = tasks.cancellationToken;
+            tasks.futures.add(executorService.submit(() -> StickerPackValidator.verifyStickerPackInfo(appContext, stickerPack)));
+            for (final Sticker sticker : stickers) {
+                tasks.futures.add(executorService.submit(() -> {
+                    cancellationToken.throwIfCancelled();
+                    if (stickerFileFilter != null && stickerFileFilter.isFileValidated(stickerPack, sticker)) {
+                        StickerPackValidator.validateStickerInfo(stickerPack.identifier, sticker, stickerPack.animatedStickerPack);
+                    } else {
+                        StickerPackValidator.validateSticker(appContext, stickerPack.identifier, sticker, stickerPack.animatedStickerPack);
+                    }
+                }));
+            }
+            packTasks.add(tasks);
+        }
+        return packTasks;
+    }
+
+    /**
+     * @return the remembered error of a pack that was already validated, or the error of its checks, which is then
+     * remembered in the pack.
+     */
+    @Nullable
+    private static IllegalStateException awaitResult(@NonNull StickerPack stickerPack, @NonNull PackTasks tasks) {
+        if (stickerPack.isValidated()) {
+            return stickerPack.isValid() ? null : new IllegalStateException(stickerPack.getValidationError());
+        }
+        final IllegalStateException error = await(tasks);
+        stickerPack.setValidationResult(error == null ? null : String.valueOf(error.getMessage()));
+        return error;
+    }
+
+    /**
+     * Waits for the checks of a pack in order, and cancels the remaining ones once one has failed.
+     *
+     * @return the first error of the pack, or null if the pack is valid.
+     */
+    @Nullable
+    private static IllegalStateException await(@NonNull PackTasks tasks) {
+        for (Future<?> future : tasks.futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                tasks.cancel();
+                final Throwable cause = e.getCause();
+                if (cause instanceof IllegalStateException) {
+                    return (IllegalStateException) cause;
+                }
+                return new IllegalStateException(cause == null ? e.getMessage() : cause.getMessage(), cause);
+            } catch (CancellationException e) {
+                return new IllegalStateException("sticker pack validation was cancelled", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tasks.cancel();
+                throw new IllegalStateException("sticker pack validation was interrupted", e);
+            }
+        }
+        return null;
+    }
+}
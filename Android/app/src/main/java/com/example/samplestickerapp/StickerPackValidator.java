@@ -9,8 +9,6 @@
 package com.example.samplestickerapp;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.Patterns;
@@ -25,22 +23,23 @@ import com.facebook.imagepipeline.common.ImageDecodeOptions;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 class StickerPackValidator {
     static final int EMOJI_MAX_LIMIT = 3;
     static final int MAX_STATIC_STICKER_A11Y_TEXT_CHAR_LIMIT = 125;
     static final int MAX_ANIMATED_STICKER_A11Y_TEXT_CHAR_LIMIT = 255;
+    static final int STATIC_STICKER_FILE_LIMIT_KB = 100;
+    static final int ANIMATED_STICKER_FILE_LIMIT_KB = 500;
+    static final long KB_IN_BYTES = 1024;
 
-    private static final int STATIC_STICKER_FILE_LIMIT_KB = 100;
-    private static final int ANIMATED_STICKER_FILE_LIMIT_KB = 500;
     private static final int EMOJI_MIN_LIMIT = 1;
     private static final int IMAGE_HEIGHT = 512;
     private static final int IMAGE_WIDTH = 512;
     private static final int STICKER_SIZE_MIN = 3;
     private static final int STICKER_SIZE_MAX = 30;
     private static final int CHAR_COUNT_MAX = 128;
-    private static final long KB_IN_BYTES = 1024;
     private static final int TRAY_IMAGE_FILE_SIZE_MAX_KB = 50;
     private static final int TRAY_IMAGE_DIMENSION_MIN = 24;
     private static final int TRAY_IMAGE_DIMENSION_MAX = 512;
@@ -48,12 +47,27 @@ class StickerPackValidator {
     private static final int ANIMATED_STICKER_TOTAL_DURATION_MAX = 10 * 1000; //ms
     private static final String PLAY_STORE_DOMAIN = "play.google.com";
     private static final String APPLE_STORE_DOMAIN = "itunes.apple.com";
+    private static final int DEFAULT_MAX_LIVE_DECODERS = 2;
+    private static final long DEFAULT_MAX_DECODER_BYTES = 2 * ANIMATED_STICKER_FILE_LIMIT_KB * KB_IN_BYTES;
 
+    private static volatile NativeDecoderBudget decoderBudget = new NativeDecoderBudget(DEFAULT_MAX_LIVE_DECODERS, DEFAULT_MAX_DECODER_BYTES);
 
     /**
-     * Checks whether a sticker pack contains valid data
+     * Sets the budget for the Fresco decoders used when a sticker cannot be validated from its headers.
      */
-    static void verifyStickerPackValidity(@NonNull Context context, @NonNull StickerPack stickerPack) throws IllegalStateException {
+    static void setDecoderBudget(@NonNull NativeDecoderBudget budget) {
+        decoderBudget = budget;
+    }
+
+    @NonNull
+    static NativeDecoderBudget getDecoderBudget() {
+        return decoderBudget;
+    }
+
+    /**
+     * Checks the pack level data: metadata, tray image and sticker count, but not the stickers themselves.
+     */
+    static void verifyStickerPackInfo(@NonNull Context context, @NonNull StickerPack stickerPack) throws IllegalStateException {
         if (TextUtils.isEmpty(stickerPack.identifier)) {
             throw new IllegalStateException("sticker pack identifier is empty");
         }
@@ -101,16 +115,16 @@ class StickerPackValidator {
             throw new IllegalStateException("publisher email does not seem valid, email is: " + stickerPack.publisherEmail);
         }
         try {
-            final byte[] stickerAssetBytes = StickerPackLoader.fetchStickerAsset(stickerPack.identifier, stickerPack.trayImageFile, context.getContentResolver());
-            if (stickerAssetBytes.length > TRAY_IMAGE_FILE_SIZE_MAX_KB * KB_IN_BYTES) {
+            final long trayImageFileLength = StickerPackLoader.fetchStickerAssetLength(stickerPack.identifier, stickerPack.trayImageFile, context.getContentResolver());
+            if (trayImageFileLength > TRAY_IMAGE_FILE_SIZE_MAX_KB * KB_IN_BYTES) {
                 throw new IllegalStateException("tray image should be less than " + TRAY_IMAGE_FILE_SIZE_MAX_KB + " KB, tray image file: " + stickerPack.trayImageFile);
             }
-            Bitmap bitmap = BitmapFactory.decodeByteArray(stickerAssetBytes, 0, stickerAssetBytes.length);
-            if (bitmap.getHeight() > TRAY_IMAGE_DIMENSION_MAX || bitmap.getHeight() < TRAY_IMAGE_DIMENSION_MIN) {
-                throw new IllegalStateException("tray image height should between " + TRAY_IMAGE_DIMENSION_MIN + " and " + TRAY_IMAGE_DIMENSION_MAX + " pixels, current tray image height is " + bitmap.getHeight() + ", tray image file: " + stickerPack.trayImageFile);
+            final TrayImageProbe.Size traySize = readTrayImageSize(context, stickerPack);
+            if (traySize.height > TRAY_IMAGE_DIMENSION_MAX || traySize.height < TRAY_IMAGE_DIMENSION_MIN) {
+                throw new IllegalStateException("tray image height should between " + TRAY_IMAGE_DIMENSION_MIN + " and " + TRAY_IMAGE_DIMENSION_MAX + " pixels, current tray image height is " + traySize.height + ", tray image file: " + stickerPack.trayImageFile);
             }
-            if (bitmap.getWidth() > TRAY_IMAGE_DIMENSION_MAX || bitmap.getWidth() < TRAY_IMAGE_DIMENSION_MIN) {
-                throw new IllegalStateException("tray image width should be between " + TRAY_IMAGE_DIMENSION_MIN + " and " + TRAY_IMAGE_DIMENSION_MAX + " pixels, current tray image width is " + bitmap.getWidth() + ", tray image file: " + stickerPack.trayImageFile);
+            if (traySize.width > TRAY_IMAGE_DIMENSION_MAX || traySize.width < TRAY_IMAGE_DIMENSION_MIN) {
+                throw new IllegalStateException("tray image width should be between " + TRAY_IMAGE_DIMENSION_MIN + " and " + TRAY_IMAGE_DIMENSION_MAX + " pixels, current tray image width is " + traySize.width + ", tray image file: " + stickerPack.trayImageFile);
             }
         } catch (IOException e) {
             throw new IllegalStateException("Cannot open tray image, " + stickerPack.trayImageFile, e);
@@ -119,12 +133,29 @@ class StickerPackValidator {
         if (stickers.size() < STICKER_SIZE_MIN || stickers.size() > STICKER_SIZE_MAX) {
             throw new IllegalStateException("sticker pack sticker count should be between 3 to 30 inclusive, it currently has " + stickers.size() + ", sticker pack identifier: " + stickerPack.identifier);
         }
-        for (final Sticker sticker : stickers) {
-            validateSticker(context, stickerPack.identifier, sticker, stickerPack.animatedStickerPack);
+    }
+
+    /**
+     * Only reads the image header from the mapped asset, the tray image is not decoded.
+     */
+    @NonNull
+    private static TrayImageProbe.Size readTrayImageSize(@NonNull Context context, @NonNull StickerPack stickerPack) throws IOException {
+        try {
+            return TrayImageProbe.probe(StickerPackLoader.fetchStickerAssetBuffer(stickerPack.identifier, stickerPack.trayImageFile, context.getContentResolver()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Cannot decode tray image, " + stickerPack.trayImageFile, e);
         }
     }
 
-    private static void validateSticker(@NonNull Context context, @NonNull final String identifier, @NonNull final Sticker sticker, final boolean animatedStickerPack) throws IllegalStateException {
+    static void validateSticker(@NonNull Context context, @NonNull final String identifier, @NonNull final Sticker sticker, final boolean animatedStickerPack) throws IllegalStateException {
+        validateStickerInfo(identifier, sticker, animatedStickerPack);
+        validateStickerFile(context, identifier, sticker.imageFileName, animatedStickerPack);
+    }
+
+    /**
+     * Checks the emojis, file name and accessibility text of a sticker, but not its file.
+     */
+    static void validateStickerInfo(@NonNull final String identifier, @NonNull final Sticker sticker, final boolean animatedStickerPack) throws IllegalStateException {
         if (sticker.emojis.size() > EMOJI_MAX_LIMIT) {
             throw new IllegalStateException("emoji count exceed limit, sticker pack identifier: " + identifier + ", filename: " + sticker.imageFileName);
         }
@@ -138,7 +169,6 @@ class StickerPackValidator {
         if (isInvalidAccessibilityText(accessibilityText, animatedStickerPack)) {
             throw new IllegalStateException("accessibility text length exceed limit, sticker pack identifier: " + identifier + ", filename: " + sticker.imageFileName);
         }
-        validateStickerFile(context, identifier, sticker.imageFileName, animatedStickerPack);
     }
 
     private static boolean isInvalidAccessibilityText(final @Nullable String accessibilityText, final boolean isAnimatedStickerPack) {
@@ -151,30 +181,30 @@ class StickerPackValidator {
 
     private static void validateStickerFile(@NonNull Context context, @NonNull String identifier, @NonNull final String fileName, final boolean animatedStickerPack) throws IllegalStateException {
         try {
-            final byte[] stickerInBytes = StickerPackLoader.fetchStickerAsset(identifier, fileName, context.getContentResolver());
-            if (!animatedStickerPack && stickerInBytes.length > STATIC_STICKER_FILE_LIMIT_KB * KB_IN_BYTES) {
-                throw new IllegalStateException("static sticker should be less than " + STATIC_STICKER_FILE_LIMIT_KB + "KB, current file is " + stickerInBytes.length / KB_IN_BYTES + " KB, sticker pack identifier: " + identifier + ", filename: " + fileName);
+            final long stickerFileLength = StickerPackLoader.fetchStickerAssetLength(identifier, fileName, context.getContentResolver());
+            if (!animatedStickerPack && stickerFileLength > STATIC_STICKER_FILE_LIMIT_KB * KB_IN_BYTES) {
+                throw new IllegalStateException("static sticker should be less than " + STATIC_STICKER_FILE_LIMIT_KB + "KB, current file is " + stickerFileLength / KB_IN_BYTES + " KB, sticker pack identifier: " + identifier + ", filename: " + fileName);
             }
-            if (animatedStickerPack && stickerInBytes.length > ANIMATED_STICKER_FILE_LIMIT_KB * KB_IN_BYTES) {
-                throw new IllegalStateException("animated sticker should be less than " + ANIMATED_STICKER_FILE_LIMIT_KB + "KB, current file is " + stickerInBytes.length / KB_IN_BYTES + " KB, sticker pack identifier: " + identifier + ", filename: " + fileName);
+            if (animatedStickerPack && stickerFileLength > ANIMATED_STICKER_FILE_LIMIT_KB * KB_IN_BYTES) {
+                throw new IllegalStateException("animated sticker should be less than " + ANIMATED_STICKER_FILE_LIMIT_KB + "KB, current file is " + stickerFileLength / KB_IN_BYTES + " KB, sticker pack identifier: " + identifier + ", filename: " + fileName);
             }
             try {
-                final WebPImage webPImage = WebPImage.createFromByteArray(stickerInBytes, ImageDecodeOptions.defaults());
-                if (webPImage.getHeight() != IMAGE_HEIGHT) {
-                    throw new IllegalStateException("sticker height should be " + IMAGE_HEIGHT + ", current height is " + webPImage.getHeight() + ", sticker pack identifier: " + identifier + ", filename: " + fileName);
+                final WebPHeaderParser.Info webPInfo = readWebPInfo(context, identifier, fileName);
+                if (webPInfo.height != IMAGE_HEIGHT) {
+                    throw new IllegalStateException("sticker height should be " + IMAGE_HEIGHT + ", current height is " + webPInfo.height + ", sticker pack identifier: " + identifier + ", filename: " + fileName);
                 }
-                if (webPImage.getWidth() != IMAGE_WIDTH) {
-                    throw new IllegalStateException("sticker width should be " + IMAGE_WIDTH + ", current width is " + webPImage.getWidth() + ", sticker pack identifier: " + identifier + ", filename: " + fileName);
+                if (webPInfo.width != IMAGE_WIDTH) {
+                    throw new IllegalStateException("sticker width should be " + IMAGE_WIDTH + ", current width is " + webPInfo.width + ", sticker pack identifier: " + identifier + ", filename: " + fileName);
                 }
                 if (animatedStickerPack) {
-                    if (webPImage.getFrameCount() <= 1) {
+                    if (webPInfo.getFrameCount() <= 1) {
                         throw new IllegalStateException("this pack is marked as animated sticker pack, all stickers should animate, sticker pack identifier: " + identifier + ", filename: " + fileName);
                     }
-                    checkFrameDurationsForAnimatedSticker(webPImage.getFrameDurations(), identifier, fileName);
-                    if (webPImage.getDuration() > ANIMATED_STICKER_TOTAL_DURATION_MAX) {
-                        throw new IllegalStateException("sticker animation max duration is: " + ANIMATED_STICKER_TOTAL_DURATION_MAX + " ms, current duration is: " + webPImage.getDuration() + " ms, sticker pack identifier: " + identifier + ", filename: " + fileName);
+                    checkFrameDurationsForAnimatedSticker(webPInfo.frameDurations, identifier, fileName);
+                    if (webPInfo.getDuration() > ANIMATED_STICKER_TOTAL_DURATION_MAX) {
+                        throw new IllegalStateException("sticker animation max duration is: " + ANIMATED_STICKER_TOTAL_DURATION_MAX + " ms, current duration is: " + webPInfo.getDuration() + " ms, sticker pack identifier: " + identifier + ", filename: " + fileName);
                     }
-                } else if (webPImage.getFrameCount() > 1) {
+                } else if (webPInfo.getFrameCount() > 1) {
                     throw new IllegalStateException("this pack is not marked as animated sticker pack, all stickers should be static stickers, sticker pack identifier: " + identifier + ", filename: " + fileName);
                 }
             } catch (IllegalArgumentException e) {
@@ -185,6 +215,42 @@ class StickerPackValidator {
         }
     }
 
+    /**
+     * Reads the sticker properties from the WebP container headers of the mapped asset only. Falls back to decoding
+     * the whole file with Fresco if the headers cannot be parsed.
+     */
+    @NonNull
+    private static WebPHeaderParser.Info readWebPInfo(@NonNull Context context, @NonNull String identifier, @NonNull String fileName) throws IOException, IllegalArgumentException {
+        final ByteBuffer stickerBuffer = StickerPackLoader.fetchStickerAssetBuffer(identifier, fileName, context.getContentResolver());
+        try {
+            return WebPHeaderParser.parse(stickerBuffer);
+        } catch (IllegalArgumentException e) {
+            Log.w("StickerPackValidator", "cannot parse webp headers, decoding the whole file, sticker pack identifier: " + identifier + ", filename: " + fileName, e);
+        }
+        final int stickerLength = stickerBuffer.remaining();
+        //the decoder copies the file into native memory, which is what the budget accounts for.
+        final NativeDecoderBudget budget = decoderBudget;
+        try {
+            budget.acquire(stickerLength);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting to decode sticker, sticker pack identifier: " + identifier + ", filename: " + fileName, e);
+        }
+        try {
+            //a mapped asset is a direct buffer that the decoder reads in place.
+            final WebPImage webPImage = stickerBuffer.isDirect()
+                    ? WebPImage.createFromByteBuffer(stickerBuffer.duplicate(), ImageDecodeOptions.defaults())
+                    : WebPImage.createFromByteArray(stickerBuffer.array(), ImageDecodeOptions.defaults());
+            try {
+                return new WebPHeaderParser.Info(webPImage.getWidth(), webPImage.getHeight(), webPImage.getFrameDurations());
+            } finally {
+                webPImage.dispose();
+            }
+        } finally {
+            budget.release(stickerLength);
+        }
+    }
+
     private static void checkFrameDurationsForAnimatedSticker(@NonNull final int[] frameDurations, @NonNull final String identifier, @NonNull final String fileName) {
         for (int frameDuration : frameDurations) {
             if (frameDuration < ANIMATED_STICKER_FRAME_DURATION_MIN) {
@@ -20,7 +20,10 @@ import com.facebook.drawee.backends.pipeline.Fresco;
 import com.facebook.drawee.interfaces.DraweeController;
 import com.facebook.drawee.view.SimpleDraweeView;
 
-public class StickerPreviewAdapter extends RecyclerView.Adapter<StickerPreviewViewHolder> {
+import java.util.Collections;
+import java.util.List;
+
+public class StickerPreviewAdapter extends RecyclerView.Adapter<StickerPreviewViewHolder> implements StickerPreviewPrefetcher.PreviewSource {
 
     private static final float COLLAPSED_STICKER_PREVIEW_BACKGROUND_ALPHA = 1f;
     private static final float EXPANDED_STICKER_PREVIEW_BACKGROUND_ALPHA = 0.2f;
@@ -74,10 +77,16 @@ public class StickerPreviewAdapter extends RecyclerView.Adapter<StickerPreviewVi
     @Override
     public void onBindViewHolder(@NonNull final StickerPreviewViewHolder stickerPreviewViewHolder, final int i) {
         stickerPreviewViewHolder.stickerPreviewView.setImageResource(errorResource);
-        stickerPreviewViewHolder.stickerPreviewView.setImageURI(StickerPackLoader.getStickerAssetUri(stickerPack.identifier, stickerPack.getStickers().get(i).imageFileName));
+        StickerPreviewRequests.setPreviewImage(stickerPreviewViewHolder.stickerPreviewView, StickerPackLoader.getStickerAssetUri(stickerPack.identifier, stickerPack.getStickers().get(i).imageFileName), cellSize);
         stickerPreviewViewHolder.stickerPreviewView.setOnClickListener(v -> expandPreview(i, stickerPreviewViewHolder.stickerPreviewView));
     }
 
+    @NonNull
+    @Override
+    public List<Uri> getPreviewUris(int position) {
+        return Collections.singletonList(StickerPackLoader.getStickerAssetUri(stickerPack.identifier, stickerPack.getStickers().get(position).imageFileName));
+    }
+
     @Override
     public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
         super.onAttachedToRecyclerView(recyclerView);
@@ -171,7 +180,7 @@ public class StickerPreviewAdapter extends RecyclerView.Adapter<StickerPreviewVi
 
             final Uri stickerAssetUri = StickerPackLoader.getStickerAssetUri(stickerPack.identifier, stickerPack.getStickers().get(position).imageFileName);
             DraweeController controller = Fresco.newDraweeControllerBuilder()
-                    .setUri(stickerAssetUri)
+                    .setImageRequest(StickerPreviewRequests.buildStickerRequest(stickerAssetUri))
                     .setAutoPlayAnimations(true)
                     .build();
             expandedStickerPreview.setImageResource(errorResource);
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.net.Uri;
+import android.view.View;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.facebook.common.executors.UiThreadImmediateExecutorService;
+import com.facebook.datasource.BaseDataSubscriber;
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.core.ImagePipeline;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warms the bitmap cache with the sticker previews of the rows about to scroll in, so flings do not show placeholders.
+ * The faster the scroll, the more rows ahead are prefetched, up to the maximum, and never more than the byte budget
+ * of bitmaps ahead of the visible rows. When the user reverses direction, the prefetches still running are cancelled.
+ */
+final class StickerPreviewPrefetcher extends RecyclerView.OnScrollListener {
+    //how far ahead a scroll is followed, in frames of its current speed.
+    private static final int LOOKAHEAD_FRAMES = 30;
+    private static final int MIN_LOOKAHEAD_ROWS = 1;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    interface PreviewSource {
+        /**
+         * @return the uris of the previews shown by the item, in the order they are shown.
+         */
+        @NonNull
+        List<Uri> getPreviewUris(int position);
+    }
+
+    @NonNull
+    private final LinearLayoutManager layoutManager;
+    @NonNull
+    private final PreviewSource previewSource;
+    private final int cellSize;
+    private final int maxLookaheadRows;
+    private final long byteBudget;
+    private final Map<Uri, DataSource<Void>> prefetches = new HashMap<>();
+    private boolean scrollingForward = true;
+
+    /**
+     * @param cellSize   the width and height of a preview in pixels, the same as the one of the preview requests.
+     * @param byteBudget the most bitmap bytes prefetched ahead of the visible rows.
+     */
+    StickerPreviewPrefetcher(@NonNull LinearLayoutManager layoutManager, @NonNull PreviewSource previewSource, int cellSize, int maxLookaheadRows, long byteBudget) {
+        this.layoutManager = layoutManager;
+        this.previewSource = previewSource;
+        this.cellSize = cellSize;
+        this.maxLookaheadRows = maxLookaheadRows;
+        this.byteBudget = byteBudget;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        final int delta = layoutManager.getOrientation() == RecyclerView.VERTICAL ? dy : dx;
+        if (delta != 0 && (delta > 0) != scrollingForward) {
+            //the rows prefetched for the other direction are not needed soon.
+            cancel();
+            scrollingForward = delta > 0;
+        }
+        final int firstVisiblePosition = layoutManager.findFirstVisibleItemPosition();
+        final int lastVisiblePosition = layoutManager.findLastVisibleItemPosition();
+        if (firstVisiblePosition == RecyclerView.NO_POSITION) {
+            return;
+        }
+        final int itemsPerRow = layoutManager instanceof GridLayoutManager ? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+        final int itemCount = layoutManager.getItemCount();
+        final int lookaheadItems = getLookaheadRows(Math.abs(delta)) * itemsPerRow;
+        final ImagePipeline imagePipeline = Fresco.getImagePipeline();
+        final long bytesPerPreview = (long) cellSize * cellSize * BYTES_PER_PIXEL;
+        long bytesAhead = 0;
+        for (int i = 0; i < lookaheadItems; i++) {
+            final int position = scrollingForward ? lastVisiblePosition + 1 + i : firstVisiblePosition - 1 - i;
+            if (position < 0 || position >= itemCount) {
+                return;
+            }
+            for (Uri uri : previewSource.getPreviewUris(position)) {
+                bytesAhead += bytesPerPreview;
+                if (bytesAhead > byteBudget) {
+                    return;
+                }
+                prefetch(imagePipeline, uri);
+            }
+        }
+    }
+
+    /**
+     * Cancels the prefetches that are still running.
+     */
+    @MainThread
+    void cancel() {
+        for (DataSource<Void> dataSource : prefetches.values()) {
+            dataSource.close();
+        }
+        prefetches.clear();
+    }
+
+    private int getLookaheadRows(int scrolledPixels) {
+        final View firstChild = layoutManager.getChildAt(0);
+        final int rowSize = firstChild == null ? 0 : layoutManager.getOrientation() == RecyclerView.VERTICAL ? firstChild.getHeight() : firstChild.getWidth();
+        if (rowSize == 0) {
+            return MIN_LOOKAHEAD_ROWS;
+        }
+        final int rows = (int) Math.ceil((double) scrolledPixels * LOOKAHEAD_FRAMES / rowSize);
+        return Math.max(MIN_LOOKAHEAD_ROWS, Math.min(maxLookaheadRows, rows));
+    }
+
+    private void prefetch(@NonNull ImagePipeline imagePipeline, @NonNull Uri uri) {
+        if (prefetches.containsKey(uri)) {
+            return;
+        }
+        //the same request as the view's, so the bitmap is cached under the key the view looks up.
+        final ImageRequest imageRequest = StickerPreviewRequests.buildPreviewRequest(uri, cellSize);
+        if (imagePipeline.isInBitmapMemoryCache(imageRequest)) {
+            return;
+        }
+        final DataSource<Void> dataSource = imagePipeline.prefetchToBitmapCache(imageRequest, null);
+        prefetches.put(uri, dataSource);
+        dataSource.subscribe(new BaseDataSubscriber<Void>() {
+            @Override
+            protected void onNewResultImpl(@NonNull DataSource<Void> finishedDataSource) {
+                if (finishedDataSource.isFinished()) {
+                    removePrefetch(uri, finishedDataSource);
+                }
+            }
+
+            @Override
+            protected void onFailureImpl(@NonNull DataSource<Void> failedDataSource) {
+                removePrefetch(uri, failedDataSource);
+            }
+        }, UiThreadImmediateExecutorService.getInstance());
+    }
+
+    private void removePrefetch(@NonNull Uri uri, @NonNull DataSource<Void> dataSource) {
+        if (prefetches.get(uri) == dataSource) {
+            prefetches.remove(uri);
+        }
+    }
+}
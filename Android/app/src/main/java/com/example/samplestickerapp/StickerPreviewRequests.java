@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.drawee.view.SimpleDraweeView;
+import com.facebook.imagepipeline.common.ImageDecodeOptions;
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+
+/**
+ * Builds the image requests of the sticker previews in the pack list and the details grid. The pack list reads the
+ * thumbnails generated at build time, see {@link StickerPackLoader#getStickerThumbnailUri}, which are too small for
+ * the larger details cells, so the details grid reads the 512x512 stickers. The requests ask the pipeline to
+ * downsample to the cell size, which needs downsampling enabled in the pipeline config, see
+ * {@link StickerImagePipelineConfig}. Previews do not animate, so animated stickers are decoded as their first frame
+ * only. The stickers are local files, so they are not copied to the disk cache.
+ */
+final class StickerPreviewRequests {
+    private static final ImageDecodeOptions PREVIEW_DECODE_OPTIONS = ImageDecodeOptions.newBuilder().setForceStaticImage(true).build();
+
+    private StickerPreviewRequests() {
+    }
+
+    /**
+     * @param cellSize the width and height of the cell in pixels.
+     */
+    @NonNull
+    static ImageRequest buildPreviewRequest(@NonNull Uri stickerAssetUri, int cellSize) {
+        return ImageRequestBuilder.newBuilderWithSource(stickerAssetUri)
+                .setResizeOptions(new ResizeOptions(cellSize, cellSize))
+                .setImageDecodeOptions(PREVIEW_DECODE_OPTIONS)
+                .disableDiskCache()
+                .build();
+    }
+
+    /**
+     * @return the request of a full size sticker, animated ones included.
+     */
+    @NonNull
+    static ImageRequest buildStickerRequest(@NonNull Uri stickerAssetUri) {
+        return ImageRequestBuilder.newBuilderWithSource(stickerAssetUri)
+                .disableDiskCache()
+                .build();
+    }
+
+    /**
+     * Shows the sticker in the view, reusing the controller the view already has.
+     */
+    static void setPreviewImage(@NonNull SimpleDraweeView view, @NonNull Uri stickerAssetUri, int cellSize) {
+        view.setController(Fresco.newDraweeControllerBuilder()
+                .setImageRequest(buildPreviewRequest(stickerAssetUri, cellSize))
+                .setOldController(view.getController())
+                .build());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App wide background scheduler. Each {@link Lane} has its own threads, so a job never waits behind jobs of another
+ * lane. Jobs submitted with a key that is already running are not run again, their callback gets the result of the
+ * running job. Cancellation is cooperative: the job should check its {@link CancellationToken}.
+ */
+final class TaskScheduler {
+    private static final String TAG = "TaskScheduler";
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+    private static final TaskScheduler INSTANCE = new TaskScheduler();
+
+    enum Lane {
+        //work the current screen is waiting for, such as loading the sticker packs.
+        UI_CRITICAL(2, Process.THREAD_PRIORITY_DEFAULT),
+        //sticker and pack checks, which fan out to one job per sticker.
+        VALIDATION(Math.max(1, Runtime.getRuntime().availableProcessors()), Process.THREAD_PRIORITY_BACKGROUND),
+        //queries to other apps. The whitelist checks run here and fan out their queries on the same lane, so there are
+        //threads for a couple of checks and the queries of one of them, see WhitelistResolver.
+        IPC(2 + WhitelistResolver.MAX_CONCURRENT_QUERIES, Process.THREAD_PRIORITY_BACKGROUND),
+        //image decodes of the Fresco pipeline, see StickerImagePipelineConfig.
+        DECODE(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), Process.THREAD_PRIORITY_BACKGROUND);
+
+        final int threadCount;
+        final int threadPriority;
+
+        Lane(int threadCount, int threadPriority) {
+            this.threadCount = threadCount;
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    interface Job<T> {
+        T run(@NonNull CancellationToken cancellationToken) throws Exception;
+    }
+
+    /**
+     * Called on the main thread, unless the handle was cancelled.
+     */
+    interface Callback<T> {
+        void onResult(T result);
+
+        void onError(@NonNull Exception exception);
+    }
+
+    static final class CancellationToken {
+        private volatile boolean cancelled;
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void throwIfCancelled() throws CancellationException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * A submitted job, as seen by one caller.
+     */
+    final class Handle<T> {
+        @NonNull
+        private final InFlightJob<T> inFlightJob;
+        @Nullable
+        private final Callback<T> callback;
+
+        private Handle(@NonNull InFlightJob<T> inFlightJob, @Nullable Callback<T> callback) {
+            this.inFlightJob = inFlightJob;
+            this.callback = callback;
+        }
+
+        /**
+         * Stops delivering the result to this caller. The job itself is cancelled once no caller waits for it.
+         */
+        void cancel() {
+            synchronized (TaskScheduler.this) {
+                inFlightJob.handles.remove(this);
+                if (inFlightJob.handles.isEmpty()) {
+                    inFlightJob.cancellationToken.cancel();
+                    if (inFlightJob.future != null) {
+                        //only removes the job from the queue if it has not started, running jobs check the token.
+                        inFlightJob.future.cancel(false);
+                    }
+                    removeInFlightJob(inFlightJob);
+                }
+            }
+        }
+    }
+
+    private static final class InFlightJob<T> {
+        @Nullable
+        final String key;
+        final CancellationToken cancellationToken = new CancellationToken();
+        final List<Handle<T>> handles = new ArrayList<>();
+        Future<?> future;
+
+        InFlightJob(@Nullable String key) {
+            this.key = key;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Lane, ExecutorService> executors = new EnumMap<>(Lane.class);
+    private final Map<String, InFlightJob<?>> inFlightJobs = new HashMap<>();
+
+    @NonNull
+    static TaskScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Runs the job on the lane.
+     *
+     * @param key identifies jobs that give the same result, or null if the job should always run.
+     */
+    @NonNull
+    synchronized <T> Handle<T> submit(@NonNull Lane lane, @Nullable String key, @NonNull Job<T> job, @Nullable Callback<T> callback) {
+        if (key != null) {
+            @SuppressWarnings("unchecked") final InFlightJob<T> runningJob = (InFlightJob<T>) inFlightJobs.get(key);
+            if (runningJob != null) {
+                final Handle<T> handle = new Handle<>(runningJob, callback);
+                runningJob.handles.add(handle);
+                return handle;
+            }
+        }
+        final InFlightJob<T> inFlightJob = new InFlightJob<>(key);
+        final Handle<T> handle = new Handle<>(inFlightJob, callback);
+        inFlightJob.handles.add(handle);
+        if (key != null) {
+            inFlightJobs.put(key, inFlightJob);
+        }
+        inFlightJob.future = getExecutor(lane).submit(() -> run(inFlightJob, job));
+        return handle;
+    }
+
+    /**
+     * @return the threads of a lane, for work that is split in many small tasks and awaited by the caller.
+     */
+    @NonNull
+    synchronized ExecutorService getExecutor(@NonNull Lane lane) {
+        ExecutorService executor = executors.get(lane);
+        if (executor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(lane.threadCount, lane.threadCount, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(lane.threadPriority);
+                    runnable.run();
+                }, "TaskScheduler-" + lane.name() + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            executor = threadPoolExecutor;
+            executors.put(lane, executor);
+        }
+        return executor;
+    }
+
+    private <T> void run(@NonNull InFlightJob<T> inFlightJob, @NonNull Job<T> job) {
+        T result = null;
+        Exception exception = null;
+        try {
+            inFlightJob.cancellationToken.throwIfCancelled();
+            result = job.run(inFlightJob.cancellationToken);
+        } catch (CancellationException e) {
+            return;
+        } catch (Exception e) {
+            if (inFlightJob.cancellationToken.isCancelled()) {
+                return;
+            }
+            Log.e(TAG, "job failed, key: " + inFlightJob.key, e);
+            exception = e;
+        } finally {
+            synchronized (this) {
+                removeInFlightJob(inFlightJob);
+            }
+        }
+        final T finalResult = result;
+        final Exception finalException = exception;
+        mainHandler.post(() -> deliver(inFlightJob, finalResult, finalException));
+    }
+
+    private <T> void deliver(@NonNull InFlightJob<T> inFlightJob, T result, @Nullable Exception exception) {
+        final List<Handle<T>> handles;
+        synchronized (this) {
+            if (inFlightJob.cancellationToken.isCancelled()) {
+                return;
+            }
+            handles = new ArrayList<>(inFlightJob.handles);
+        }
+        for (Handle<T> handle : handles) {
+            synchronized (this) {
+                //a callback can cancel the handles that come after it.
+                if (!inFlightJob.handles.contains(handle)) {
+                    continue;
+                }
+            }
+            if (handle.callback == null) {
+                continue;
+            }
+            if (exception == null) {
+                handle.callback.onResult(result);
+            } else {
+                handle.callback.onError(exception);
+            }
+        }
+    }
+
+    private void removeInFlightJob(@NonNull InFlightJob<?> inFlightJob) {
+        if (inFlightJob.key != null && inFlightJobs.get(inFlightJob.key) == inFlightJob) {
+            inFlightJobs.remove(inFlightJob.key);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.graphics.BitmapFactory;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the dimensions of a tray image without allocating pixel memory. PNG files are read from their IHDR header,
+ * other formats are read with {@link BitmapFactory.Options#inJustDecodeBounds}.
+ */
+class TrayImageProbe {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    // signature, IHDR chunk length and type, width and height.
+    private static final int PNG_HEADER_SIZE = 24;
+
+    static final class Size {
+        final int width;
+        final int height;
+
+        Size(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Probes the image from the position of the buffer, without copying it. The position of the buffer is not changed.
+     *
+     * @throws IllegalArgumentException if the image cannot be decoded.
+     */
+    @NonNull
+    static Size probe(@NonNull ByteBuffer buffer) throws IllegalArgumentException {
+        if (buffer.remaining() >= PNG_HEADER_SIZE) {
+            final byte[] header = new byte[PNG_HEADER_SIZE];
+            buffer.duplicate().get(header);
+            if (isPngWithIhdr(header)) {
+                return new Size(readInt(header, 16), readInt(header, 20));
+            }
+        }
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(new ByteBufferInputStream(buffer), null, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IllegalArgumentException("cannot decode image bounds");
+        }
+        return new Size(options.outWidth, options.outHeight);
+    }
+
+    private static boolean isPngWithIhdr(@NonNull byte[] header) {
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (header[i] != PNG_SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return header[12] == 'I' && header[13] == 'H' && header[14] == 'D' && header[15] == 'R';
+    }
+
+    private static int readInt(@NonNull byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+}
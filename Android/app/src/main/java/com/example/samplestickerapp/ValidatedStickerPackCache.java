@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On disk cache of the sticker packs that passed validation in a previous load. The cache remembers the
+ * {@link android.content.pm.PackageInfo#lastUpdateTime} of the app that wrote it:
+ * <ul>
+ * <li>if the app was not updated since and all the packs passed validation, the cached list is used as is, without
+ * reading assets or validating.</li>
+ * <li>if the app was updated, a pack is still considered validated when its identifier, image data version and the
+ * rest of its data, including sticker sizes, are the same as in the cache. Only the other packs are validated again.</li>
+ * <li>in the packs that are validated again, the file of a sticker is only checked when its {@link StickerFingerprint}
+ * is not the one stored with its last passing verdict.</li>
+ * </ul>
+ */
+final class ValidatedStickerPackCache implements StickerPackValidationEngine.StickerFileFilter {
+    private static final String TAG = "StickerPackCache";
+    private static final String CACHE_FILE_NAME = "validated_sticker_packs";
+    private static final int MAGIC = 0x57535650; //"WSVP"
+    private static final int VERSION = 5;
+    private static final long UNKNOWN_LAST_UPDATE_TIME = -1;
+
+    @NonNull
+    private final File cacheFile;
+    private final long appLastUpdateTime;
+    private final boolean appUpdated;
+    //false if some packs of the list failed validation and were not cached.
+    private final boolean complete;
+    //identifier of the pack to its serialized data, identifiers keeps the list order.
+    @NonNull
+    private final Map<String, byte[]> records;
+    @NonNull
+    private final List<String> identifiers;
+    //sticker key to the verdict read from the cache file, and to the verdict of the current load.
+    @NonNull
+    private final Map<String, StickerVerdict> cachedVerdicts;
+    @NonNull
+    private final Map<String, StickerVerdict> currentVerdicts = new ConcurrentHashMap<>();
+    @NonNull
+    private final ContentResolver contentResolver;
+    private final AtomicInteger skippedStickerCount = new AtomicInteger();
+    private final AtomicInteger checkedStickerCount = new AtomicInteger();
+
+    /**
+     * The fingerprint of a sticker file that passed validation, the file size limits depend on the pack type.
+     */
+    private static final class StickerVerdict {
+        @NonNull
+        final StickerFingerprint fingerprint;
+        final boolean animatedStickerPack;
+
+        StickerVerdict(@NonNull StickerFingerprint fingerprint, boolean animatedStickerPack) {
+            this.fingerprint = fingerprint;
+            this.animatedStickerPack = animatedStickerPack;
+        }
+
+        boolean matches(@NonNull StickerFingerprint fingerprint, boolean animatedStickerPack) {
+            return this.fingerprint.equals(fingerprint) && this.animatedStickerPack == animatedStickerPack;
+        }
+    }
+
+    private ValidatedStickerPackCache(@NonNull File cacheFile, long appLastUpdateTime, boolean appUpdated, boolean complete, @NonNull Map<String, byte[]> records, @NonNull List<String> identifiers, @NonNull Map<String, StickerVerdict> cachedVerdicts, @NonNull ContentResolver contentResolver) {
+        this.cacheFile = cacheFile;
+        this.appLastUpdateTime = appLastUpdateTime;
+        this.appUpdated = appUpdated;
+        this.complete = complete;
+        this.records = records;
+        this.identifiers = identifiers;
+        this.cachedVerdicts = cachedVerdicts;
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Reads the cache file. A missing or unreadable file gives an empty cache.
+     */
+    @NonNull
+    static ValidatedStickerPackCache load(@NonNull Context context) {
+        return load(new File(context.getCacheDir(), CACHE_FILE_NAME), getAppLastUpdateTime(context), context.getApplicationContext().getContentResolver());
+    }
+
+    /**
+     * @param appLastUpdateTime the last update time of the running app, the cache is used as is only if it matches
+     *                          the one the file was written with.
+     * @param contentResolver   reads the sticker files whose fingerprint is computed.
+     */
+    @NonNull
+    static ValidatedStickerPackCache load(@NonNull File cacheFile, long appLastUpdateTime, @NonNull ContentResolver contentResolver) {
+        final Map<String, byte[]> records = new HashMap<>();
+        final List<String> identifiers = new ArrayList<>();
+        final Map<String, StickerVerdict> cachedVerdicts = new HashMap<>();
+        long cachedLastUpdateTime = UNKNOWN_LAST_UPDATE_TIME;
+        boolean complete = false;
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                throw new IOException("unsupported cache file");
+            }
+            cachedLastUpdateTime = inputStream.readLong();
+            complete = inputStream.readBoolean();
+            final int packCount = inputStream.readInt();
+            for (int i = 0; i < packCount; i++) {
+                final String identifier = inputStream.readUTF();
+                final byte[] record = new byte[inputStream.readInt()];
+                inputStream.readFully(record);
+                records.put(identifier, record);
+                identifiers.add(identifier);
+                final int verdictCount = inputStream.readInt();
+                for (int j = 0; j < verdictCount; j++) {
+                    final String fileName = inputStream.readUTF();
+                    final boolean animatedStickerPack = inputStream.readBoolean();
+                    final StickerFingerprint fingerprint = new StickerFingerprint(inputStream.readLong(), inputStream.readLong());
+                    cachedVerdicts.put(getStickerKey(identifier, fileName), new StickerVerdict(fingerprint, animatedStickerPack));
+                }
+            }
+        } catch (FileNotFoundException e) {
+            //first load.
+        } catch (IOException e) {
+            Log.w(TAG, "cannot read validated sticker pack cache, validating all packs", e);
+            records.clear();
+            identifiers.clear();
+            cachedVerdicts.clear();
+            complete = false;
+        }
+        final boolean appUpdated = appLastUpdateTime == UNKNOWN_LAST_UPDATE_TIME || cachedLastUpdateTime != appLastUpdateTime;
+        return new ValidatedStickerPackCache(cacheFile, appLastUpdateTime, appUpdated, complete, records, identifiers, cachedVerdicts, contentResolver);
+    }
+
+    /**
+     * @return the cached pack list if the app was not updated since it was written and no pack was left out, or null
+     * if the packs need to be fetched again.
+     */
+    @Nullable
+    ArrayList<StickerPack> getStickerPacksIfAppNotUpdated() {
+        if (appUpdated || !complete || identifiers.isEmpty()) {
+            return null;
+        }
+        final ArrayList<StickerPack> stickerPackList = new ArrayList<>(identifiers.size());
+        try {
+            for (String identifier : identifiers) {
+                final StickerPack stickerPack = readStickerPack(records.get(identifier));
+                //only packs that passed validation are cached.
+                stickerPack.setValidationResult(null);
+                stickerPackList.add(stickerPack);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "cannot read validated sticker pack cache, fetching all packs", e);
+            return null;
+        }
+        return stickerPackList;
+    }
+
+    /**
+     * @return true if the same pack, with the same image data version, passed validation when the cache was written.
+     */
+    boolean isValidated(@NonNull StickerPack stickerPack) {
+        final byte[] record = records.get(stickerPack.identifier);
+        if (record == null) {
+            return false;
+        }
+        try {
+            //the record holds the image data version, so a version bump never matches.
+            return Arrays.equals(record, writeStickerPack(stickerPack));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the whole sticker file and compares it with the last passing verdict.
+     */
+    @Override
+    public boolean isFileValidated(@NonNull StickerPack stickerPack, @NonNull Sticker sticker) {
+        final StickerFingerprint fingerprint;
+        try {
+            fingerprint = StickerFingerprint.compute(contentResolver, stickerPack.identifier, sticker.imageFileName);
+        } catch (IOException e) {
+            //the validator reports the missing file.
+            checkedStickerCount.incrementAndGet();
+            return false;
+        }
+        return isFileValidated(stickerPack, sticker, fingerprint);
+    }
+
+    /**
+     * Keeps the fingerprint, so it is saved with the pack if the pack passes validation.
+     *
+     * @return true if the sticker file passed validation before with the same fingerprint and pack type.
+     */
+    boolean isFileValidated(@NonNull StickerPack stickerPack, @NonNull Sticker sticker, @NonNull StickerFingerprint fingerprint) {
+        final String key = getStickerKey(stickerPack.identifier, sticker.imageFileName);
+        currentVerdicts.put(key, new StickerVerdict(fingerprint, stickerPack.animatedStickerPack));
+        final StickerVerdict cachedVerdict = cachedVerdicts.get(key);
+        if (cachedVerdict != null && cachedVerdict.matches(fingerprint, stickerPack.animatedStickerPack)) {
+            skippedStickerCount.incrementAndGet();
+            Log.v(TAG, "sticker file unchanged, skipped: " + key);
+            return true;
+        }
+        checkedStickerCount.incrementAndGet();
+        Log.v(TAG, (cachedVerdict == null ? "new sticker file, checked: " : "sticker file changed, checked: ") + key);
+        return false;
+    }
+
+    /**
+     * @return how many sticker files were not checked again because their fingerprint did not change.
+     */
+    int getSkippedStickerCount() {
+        return skippedStickerCount.get();
+    }
+
+    /**
+     * @return how many sticker files were checked because they are new or their fingerprint changed.
+     */
+    int getCheckedStickerCount() {
+        return checkedStickerCount.get();
+    }
+
+    /**
+     * Replaces the cache with the packs of the list that passed validation. An invalid pack does not keep the others
+     * from being cached, it is validated again on the next load.
+     */
+    void save(@NonNull List<StickerPack> stickerPackList) {
+        if (appLastUpdateTime == UNKNOWN_LAST_UPDATE_TIME) {
+            return;
+        }
+        final List<StickerPack> validStickerPacks = new ArrayList<>(stickerPackList.size());
+        for (StickerPack stickerPack : stickerPackList) {
+            if (stickerPack.isValid()) {
+                validStickerPacks.add(stickerPack);
+            }
+        }
+        final File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                outputStream.writeLong(appLastUpdateTime);
+                outputStream.writeBoolean(validStickerPacks.size() == stickerPackList.size());
+                outputStream.writeInt(validStickerPacks.size());
+                for (StickerPack stickerPack : validStickerPacks) {
+                    final byte[] record = writeStickerPack(stickerPack);
+                    outputStream.writeUTF(stickerPack.identifier);
+                    outputStream.writeInt(record.length);
+                    outputStream.write(record);
+                    writeStickerVerdicts(outputStream, stickerPack);
+                }
+            }
+            if (!tempFile.renameTo(cacheFile)) {
+                throw new IOException("cannot rename " + tempFile + " to " + cacheFile);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "cannot write validated sticker pack cache", e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    private void writeStickerVerdicts(@NonNull DataOutputStream outputStream, @NonNull StickerPack stickerPack) throws IOException {
+        final List<Sticker> stickers = stickerPack.getStickers();
+        final List<Sticker> stickersWithVerdict = new ArrayList<>(stickers.size());
+        final List<StickerVerdict> verdicts = new ArrayList<>(stickers.size());
+        for (Sticker sticker : stickers) {
+            //packs that were not validated again keep their cached verdicts.
+            final String key = getStickerKey(stickerPack.identifier, sticker.imageFileName);
+            StickerVerdict verdict = currentVerdicts.get(key);
+            if (verdict == null) {
+                verdict = cachedVerdicts.get(key);
+            }
+            if (verdict != null) {
+                stickersWithVerdict.add(sticker);
+                verdicts.add(verdict);
+            }
+        }
+        outputStream.writeInt(verdicts.size());
+        for (int i = 0; i < verdicts.size(); i++) {
+            final StickerVerdict verdict = verdicts.get(i);
+            outputStream.writeUTF(stickersWithVerdict.get(i).imageFileName);
+            outputStream.writeBoolean(verdict.animatedStickerPack);
+            outputStream.writeLong(verdict.fingerprint.size);
+            outputStream.writeLong(verdict.fingerprint.crc);
+        }
+    }
+
+    @NonNull
+    private static String getStickerKey(@NonNull String identifier, @NonNull String fileName) {
+        return identifier + "/" + fileName;
+    }
+
+    private static long getAppLastUpdateTime(@NonNull Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return UNKNOWN_LAST_UPDATE_TIME;
+        }
+    }
+
+    @NonNull
+    private static byte[] writeStickerPack(@NonNull StickerPack stickerPack) throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataOutputStream outputStream = new DataOutputStream(byteArrayOutputStream)) {
+            writeString(outputStream, stickerPack.identifier);
+            writeString(outputStream, stickerPack.name);
+            writeString(outputStream, stickerPack.publisher);
+            writeString(outputStream, stickerPack.trayImageFile);
+            writeString(outputStream, stickerPack.publisherEmail);
+            writeString(outputStream, stickerPack.publisherWebsite);
+            writeString(outputStream, stickerPack.privacyPolicyWebsite);
+            writeString(outputStream, stickerPack.licenseAgreementWebsite);
+            writeString(outputStream, stickerPack.imageDataVersion);
+            outputStream.writeBoolean(stickerPack.avoidCache);
+            outputStream.writeBoolean(stickerPack.animatedStickerPack);
+            writeString(outputStream, stickerPack.androidPlayStoreLink);
+            writeString(outputStream, stickerPack.iosAppStoreLink);
+            final List<Sticker> stickers = stickerPack.getStickers();
+            outputStream.writeInt(stickers.size());
+            for (Sticker sticker : stickers) {
+                writeString(outputStream, sticker.imageFileName);
+                outputStream.writeInt(sticker.emojis.size());
+                for (String emoji : sticker.emojis) {
+                    writeString(outputStream, emoji);
+                }
+                writeString(outputStream, sticker.accessibilityText);
+                outputStream.writeLong(sticker.size);
+            }
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @NonNull
+    private static StickerPack readStickerPack(@NonNull byte[] record) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(record))) {
+            final StickerPack stickerPack = new StickerPack(
+                    readString(inputStream),
+                    readString(inputStream),
+                    readString(inputStream),
+                    readString(inputStream),
+                    readString(inputStream),
+                    readString(inputStream),
+                    readString(inputStream),
+                    readString(inputStream),
+                    readString(inputStream),
+                    inputStream.readBoolean(),
+                    inputStream.readBoolean());
+            stickerPack.setAndroidPlayStoreLink(readString(inputStream));
+            stickerPack.setIosAppStoreLink(readString(inputStream));
+            final int stickerCount = inputStream.readInt();
+            final List<Sticker> stickers = new ArrayList<>(stickerCount);
+            for (int i = 0; i < stickerCount; i++) {
+                final String imageFileName = readString(inputStream);
+                final int emojiCount = inputStream.readInt();
+                final List<String> emojis = new ArrayList<>(emojiCount);
+                for (int j = 0; j < emojiCount; j++) {
+                    emojis.add(readString(inputStream));
+                }
+                final Sticker sticker = new Sticker(imageFileName, emojis, readString(inputStream));
+                sticker.setSize(inputStream.readLong());
+                stickers.add(sticker);
+            }
+            stickerPack.setStickers(stickers);
+            return stickerPack;
+        }
+    }
+
+    private static void writeString(@NonNull DataOutputStream outputStream, @Nullable String string) throws IOException {
+        outputStream.writeBoolean(string != null);
+        if (string != null) {
+            outputStream.writeUTF(string);
+        }
+    }
+
+    @Nullable
+    private static String readString(@NonNull DataInputStream inputStream) throws IOException {
+        return inputStream.readBoolean() ? inputStream.readUTF() : null;
+    }
+}
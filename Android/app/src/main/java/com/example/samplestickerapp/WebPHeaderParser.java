@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads the size, frame count and frame durations of a WebP file from its RIFF container headers, without decoding
+ * the image. Chunk payloads that are not needed are skipped, so only a few bytes per frame are read.
+ * See https://developers.google.com/speed/webp/docs/riff_container
+ */
+class WebPHeaderParser {
+    private static final int RIFF_HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int VP8_HEADER_SIZE = 10;
+    private static final int VP8L_HEADER_SIZE = 5;
+    private static final int VP8X_HEADER_SIZE = 10;
+    private static final int ANMF_HEADER_SIZE = 16;
+    private static final int VP8L_SIGNATURE = 0x2f;
+    private static final int VP8X_ANIMATION_FLAG = 0x02;
+
+    static final class Info {
+        final int width;
+        final int height;
+        @NonNull
+        final int[] frameDurations;
+
+        Info(int width, int height, @NonNull int[] frameDurations) {
+            this.width = width;
+            this.height = height;
+            this.frameDurations = frameDurations;
+        }
+
+        int getFrameCount() {
+            return frameDurations.length;
+        }
+
+        int getDuration() {
+            int duration = 0;
+            for (int frameDuration : frameDurations) {
+                duration += frameDuration;
+            }
+            return duration;
+        }
+    }
+
+    /**
+     * Parses the file from the position of the buffer, without copying it. The position of the buffer is not changed.
+     *
+     * @throws IllegalArgumentException if the data is not a well formed WebP file.
+     */
+    @NonNull
+    static Info parse(@NonNull ByteBuffer buffer) throws IllegalArgumentException {
+        try {
+            return parse(new ByteBufferInputStream(buffer));
+        } catch (IOException e) {
+            //reading a buffer does not do I/O, running out of data is reported as an IllegalArgumentException.
+            throw new IllegalArgumentException("cannot read WebP file", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is not a well formed WebP file.
+     */
+    @NonNull
+    static Info parse(@NonNull InputStream inputStream) throws IOException, IllegalArgumentException {
+        final byte[] header = new byte[ANMF_HEADER_SIZE];
+        readHeader(inputStream, header, RIFF_HEADER_SIZE);
+        if (!isFourCC(header, 0, "RIFF") || !isFourCC(header, 8, "WEBP")) {
+            throw new IllegalArgumentException("not a RIFF WebP file");
+        }
+        long remaining = readUInt32(header, 4) - 4;
+
+        int canvasWidth = 0;
+        int canvasHeight = 0;
+        boolean extendedFormat = false;
+        int[] frameDurations = new int[8];
+        int frameCount = 0;
+        while (remaining >= CHUNK_HEADER_SIZE) {
+            readHeader(inputStream, header, CHUNK_HEADER_SIZE);
+            final long chunkSize = readUInt32(header, 4);
+            final long paddedChunkSize = chunkSize + (chunkSize & 1);
+            remaining -= CHUNK_HEADER_SIZE + paddedChunkSize;
+            if (isFourCC(header, 0, "VP8X")) {
+                requireChunkSize(chunkSize, VP8X_HEADER_SIZE, "VP8X");
+                readHeader(inputStream, header, VP8X_HEADER_SIZE);
+                skipFully(inputStream, paddedChunkSize - VP8X_HEADER_SIZE);
+                extendedFormat = true;
+                canvasWidth = readUInt24(header, 4) + 1;
+                canvasHeight = readUInt24(header, 7) + 1;
+                if ((header[0] & VP8X_ANIMATION_FLAG) == 0) {
+                    return new Info(canvasWidth, canvasHeight, new int[]{0});
+                }
+            } else if (isFourCC(header, 0, "ANMF")) {
+                if (!extendedFormat) {
+                    throw new IllegalArgumentException("ANMF chunk without VP8X chunk");
+                }
+                requireChunkSize(chunkSize, ANMF_HEADER_SIZE, "ANMF");
+                readHeader(inputStream, header, ANMF_HEADER_SIZE);
+                skipFully(inputStream, paddedChunkSize - ANMF_HEADER_SIZE);
+                if (frameCount == frameDurations.length) {
+                    frameDurations = Arrays.copyOf(frameDurations, frameCount * 2);
+                }
+                frameDurations[frameCount++] = readUInt24(header, 12);
+            } else if (!extendedFormat && isFourCC(header, 0, "VP8 ")) {
+                requireChunkSize(chunkSize, VP8_HEADER_SIZE, "VP8");
+                readHeader(inputStream, header, VP8_HEADER_SIZE);
+                if ((header[3] & 0xff) != 0x9d || (header[4] & 0xff) != 0x01 || (header[5] & 0xff) != 0x2a) {
+                    throw new IllegalArgumentException("invalid VP8 start code");
+                }
+                return new Info(readUInt16(header, 6) & 0x3fff, readUInt16(header, 8) & 0x3fff, new int[]{0});
+            } else if (!extendedFormat && isFourCC(header, 0, "VP8L")) {
+                requireChunkSize(chunkSize, VP8L_HEADER_SIZE, "VP8L");
+                readHeader(inputStream, header, VP8L_HEADER_SIZE);
+                if ((header[0] & 0xff) != VP8L_SIGNATURE) {
+                    throw new IllegalArgumentException("invalid VP8L signature");
+                }
+                final long bits = readUInt32(header, 1);
+                return new Info((int) (bits & 0x3fff) + 1, (int) ((bits >> 14) & 0x3fff) + 1, new int[]{0});
+            } else {
+                //ANIM, ICCP, ALPH, EXIF, XMP and unknown chunks are not needed.
+                skipFully(inputStream, paddedChunkSize);
+            }
+        }
+        if (!extendedFormat) {
+            throw new IllegalArgumentException("no image data in WebP file");
+        }
+        return new Info(canvasWidth, canvasHeight, Arrays.copyOf(frameDurations, frameCount));
+    }
+
+    private static void requireChunkSize(long chunkSize, int minimumSize, @NonNull String chunkName) {
+        if (chunkSize < minimumSize) {
+            throw new IllegalArgumentException(chunkName + " chunk is too small: " + chunkSize);
+        }
+    }
+
+    private static boolean isFourCC(@NonNull byte[] bytes, int offset, @NonNull String fourCC) {
+        for (int i = 0; i < 4; i++) {
+            if (bytes[offset + i] != fourCC.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readUInt16(@NonNull byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readUInt24(@NonNull byte[] bytes, int offset) {
+        return readUInt16(bytes, offset) | (bytes[offset + 2] & 0xff) << 16;
+    }
+
+    private static long readUInt32(@NonNull byte[] bytes, int offset) {
+        return (readUInt24(bytes, offset) | (long) (bytes[offset + 3] & 0xff) << 24);
+    }
+
+    private static void readHeader(@NonNull InputStream inputStream, @NonNull byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            final int read = inputStream.read(buffer, offset, length - offset);
+            if (read == -1) {
+                throw new IllegalArgumentException("WebP file is truncated", new EOFException());
+            }
+            offset += read;
+        }
+    }
+
+    private static void skipFully(@NonNull InputStream inputStream, long length) throws IOException {
+        while (length > 0) {
+            final long skipped = inputStream.skip(length);
+            if (skipped > 0) {
+                length -= skipped;
+            } else if (inputStream.read() == -1) {
+                throw new IllegalArgumentException("WebP file is truncated", new EOFException());
+            } else {
+                length--;
+            }
+        }
+    }
+}
@@ -12,7 +12,6 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.net.Uri;
 
@@ -29,38 +28,65 @@ class WhitelistCheck {
     private static final String QUERY_RESULT_COLUMN_NAME = "result";
 
     static boolean isWhitelisted(@NonNull Context context, @NonNull String identifier) {
+        return getWhitelistStatus(context, identifier).isWhitelisted();
+    }
+
+    /**
+     * Queries the installed WhatsApp apps, a failed query counts as not whitelisted.
+     */
+    @NonNull
+    static WhitelistStatusService.Status getWhitelistStatus(@NonNull Context context, @NonNull String identifier) {
+        final PackageManager packageManager = context.getPackageManager();
+        final boolean consumerAppInstalled = isWhatsAppConsumerAppInstalled(packageManager);
+        final boolean smbAppInstalled = isWhatsAppSmbAppInstalled(packageManager);
+        if (!consumerAppInstalled && !smbAppInstalled) {
+            return new WhitelistStatusService.Status(false, false, false, false);
+        }
+        boolean consumerResult;
+        boolean smbResult;
         try {
-            if (!isWhatsAppConsumerAppInstalled(context.getPackageManager()) && !isWhatsAppSmbAppInstalled(context.getPackageManager())) {
-                return false;
-            }
-            boolean consumerResult = isStickerPackWhitelistedInWhatsAppConsumer(context, identifier);
-            boolean smbResult = isStickerPackWhitelistedInWhatsAppSmb(context, identifier);
-            return consumerResult && smbResult;
+            consumerResult = isStickerPackWhitelistedInWhatsAppConsumer(context, identifier);
         } catch (Exception e) {
-            return false;
+            consumerResult = false;
         }
+        try {
+            smbResult = isStickerPackWhitelistedInWhatsAppSmb(context, identifier);
+        } catch (Exception e) {
+            smbResult = false;
+        }
+        return new WhitelistStatusService.Status(consumerAppInstalled, smbAppInstalled, consumerResult, smbResult);
     }
 
     private static boolean isWhitelistedFromProvider(@NonNull Context context, @NonNull String identifier, String whatsappPackageName) {
         final PackageManager packageManager = context.getPackageManager();
         if (isPackageInstalled(whatsappPackageName, packageManager)) {
-            final String whatsappProviderAuthority = whatsappPackageName + CONTENT_PROVIDER;
-            final ProviderInfo providerInfo = packageManager.resolveContentProvider(whatsappProviderAuthority, PackageManager.GET_META_DATA);
             // provider is not there. The WhatsApp app may be an old version.
-            if (providerInfo == null) {
+            if (!isWhitelistProviderAvailable(whatsappPackageName, packageManager)) {
                 return false;
             }
-            final Uri queryUri = new Uri.Builder().scheme(ContentResolver.SCHEME_CONTENT).authority(whatsappProviderAuthority).appendPath(QUERY_PATH).appendQueryParameter(AUTHORITY_QUERY_PARAM, STICKER_APP_AUTHORITY).appendQueryParameter(IDENTIFIER_QUERY_PARAM, identifier).build();
-            try (final Cursor cursor = context.getContentResolver().query(queryUri, null, null, null, null)) {
-                if (cursor != null && cursor.moveToFirst()) {
-                    final int whiteListResult = cursor.getInt(cursor.getColumnIndexOrThrow(QUERY_RESULT_COLUMN_NAME));
-                    return whiteListResult == 1;
-                }
-            }
+            return queryWhitelistProvider(context, identifier, whatsappPackageName);
         } else {
             //if app is not installed, then don't need to take into its whitelist info into account.
             return true;
         }
+    }
+
+    static boolean isWhitelistProviderAvailable(String whatsappPackageName, PackageManager packageManager) {
+        return packageManager.resolveContentProvider(whatsappPackageName + CONTENT_PROVIDER, PackageManager.GET_META_DATA) != null;
+    }
+
+    /**
+     * Queries the whitelist provider of a WhatsApp app, which should be installed and have the provider.
+     */
+    static boolean queryWhitelistProvider(@NonNull Context context, @NonNull String identifier, String whatsappPackageName) {
+        final String whatsappProviderAuthority = whatsappPackageName + CONTENT_PROVIDER;
+        final Uri queryUri = new Uri.Builder().scheme(ContentResolver.SCHEME_CONTENT).authority(whatsappProviderAuthority).appendPath(QUERY_PATH).appendQueryParameter(AUTHORITY_QUERY_PARAM, STICKER_APP_AUTHORITY).appendQueryParameter(IDENTIFIER_QUERY_PARAM, identifier).build();
+        try (final Cursor cursor = context.getContentResolver().query(queryUri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                final int whiteListResult = cursor.getInt(cursor.getColumnIndexOrThrow(QUERY_RESULT_COLUMN_NAME));
+                return whiteListResult == 1;
+            }
+        }
         return false;
     }
 
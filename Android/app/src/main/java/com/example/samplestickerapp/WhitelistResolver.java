@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the whitelist status of many packs at once. The installed apps and their providers are looked up once per
+ * batch, then the consumer and business app queries of all the packs run in parallel, at most
+ * {@link #MAX_CONCURRENT_QUERIES} at a time per batch. Queries that have not finished by the deadline are cancelled,
+ * and their packs are left out of the result, so a hung WhatsApp provider cannot stall the caller.
+ * <p>
+ * The queries run on the {@link TaskScheduler.Lane#IPC} lane, like the batches that call this. Interrupting a query
+ * does not return it from a hung binder call, so a lane thread can stay busy after the deadline. The next batches then
+ * have fewer threads, but still return by their deadline.
+ */
+final class WhitelistResolver {
+    private static final String TAG = "WhitelistResolver";
+    static final long DEFAULT_DEADLINE_MS = 3000;
+    static final int MAX_CONCURRENT_QUERIES = 4;
+
+    private WhitelistResolver() {
+    }
+
+    /**
+     * @return the status of each pack that was resolved before the deadline.
+     */
+    @WorkerThread
+    @NonNull
+    static Map<String, WhitelistStatusService.Status> resolve(@NonNull Context context, @NonNull List<String> identifiers, long deadlineMs) throws InterruptedException {
+        final Map<String, WhitelistStatusService.Status> statuses = new HashMap<>();
+        if (identifiers.isEmpty()) {
+            return statuses;
+        }
+        final PackageManager packageManager = context.getPackageManager();
+        final boolean consumerAppInstalled = WhitelistCheck.isWhatsAppConsumerAppInstalled(packageManager);
+        final boolean smbAppInstalled = WhitelistCheck.isWhatsAppSmbAppInstalled(packageManager);
+        if (!consumerAppInstalled && !smbAppInstalled) {
+            for (String identifier : identifiers) {
+                statuses.put(identifier, new WhitelistStatusService.Status(false, false, false, false));
+            }
+            return statuses;
+        }
+        //an app that is installed without the provider is too old to have any pack.
+        final boolean queryConsumerApp = consumerAppInstalled && WhitelistCheck.isWhitelistProviderAvailable(WhitelistCheck.CONSUMER_WHATSAPP_PACKAGE_NAME, packageManager);
+        final boolean querySmbApp = smbAppInstalled && WhitelistCheck.isWhitelistProviderAvailable(WhitelistCheck.SMB_WHATSAPP_PACKAGE_NAME, packageManager);
+
+        final List<Callable<Boolean>> queries = new ArrayList<>();
+        for (String identifier : identifiers) {
+            if (queryConsumerApp) {
+                queries.add(() -> WhitelistCheck.queryWhitelistProvider(context, identifier, WhitelistCheck.CONSUMER_WHATSAPP_PACKAGE_NAME));
+            }
+            if (querySmbApp) {
+                queries.add(() -> WhitelistCheck.queryWhitelistProvider(context, identifier, WhitelistCheck.SMB_WHATSAPP_PACKAGE_NAME));
+            }
+        }
+        final List<Future<Boolean>> futures = runQueries(queries, deadlineMs);
+
+        //the queries of a pack are next to each other, consumer app first.
+        final int queriesPerPack = (queryConsumerApp ? 1 : 0) + (querySmbApp ? 1 : 0);
+        for (int i = 0; i < identifiers.size(); i++) {
+            final String identifier = identifiers.get(i);
+            final int firstQuery = i * queriesPerPack;
+            try {
+                //an app that is not installed does not need the pack.
+                final boolean whitelistedInConsumerApp = !consumerAppInstalled || (queryConsumerApp && getResult(futures, firstQuery));
+                final boolean whitelistedInSmbApp = !smbAppInstalled || (querySmbApp && getResult(futures, firstQuery + (queryConsumerApp ? 1 : 0)));
+                statuses.put(identifier, new WhitelistStatusService.Status(consumerAppInstalled, smbAppInstalled, whitelistedInConsumerApp, whitelistedInSmbApp));
+            } catch (CancellationException e) {
+                Log.w(TAG, "whitelist query did not finish before the deadline, sticker pack identifier: " + identifier);
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Runs the queries, keeping at most {@link #MAX_CONCURRENT_QUERIES} of them running, until they are all done or
+     * the deadline has passed. The queries that are still queued or running then are cancelled.
+     *
+     * @return the futures of the queries that were started, in query order. The queries after them were not started.
+     */
+    @NonNull
+    private static List<Future<Boolean>> runQueries(@NonNull List<Callable<Boolean>> queries, long deadlineMs) throws InterruptedException {
+        final CompletionService<Boolean> completionService = new ExecutorCompletionService<>(TaskScheduler.getInstance().getExecutor(TaskScheduler.Lane.IPC));
+        final List<Future<Boolean>> futures = new ArrayList<>(queries.size());
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        int runningQueryCount = 0;
+        try {
+            while (futures.size() < queries.size() || runningQueryCount > 0) {
+                if (futures.size() < queries.size() && runningQueryCount < MAX_CONCURRENT_QUERIES) {
+                    futures.add(completionService.submit(queries.get(futures.size())));
+                    runningQueryCount++;
+                    continue;
+                }
+                final long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0 || completionService.poll(remainingNanos, TimeUnit.NANOSECONDS) == null) {
+                    break;
+                }
+                runningQueryCount--;
+            }
+        } finally {
+            for (Future<Boolean> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * @throws CancellationException if the query was cancelled by the deadline, or was not started before it.
+     */
+    private static boolean getResult(@NonNull List<Future<Boolean>> futures, int query) throws InterruptedException {
+        if (query >= futures.size()) {
+            throw new CancellationException();
+        }
+        try {
+            return futures.get(query).get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "whitelist query failed", e.getCause());
+            return false;
+        }
+    }
+}
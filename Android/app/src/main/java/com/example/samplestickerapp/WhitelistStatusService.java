@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches whether each pack is whitelisted in WhatsApp, so screens can show the status without querying WhatsApp
+ * every time they are resumed. A status expires after {@link #STATUS_TTL_MS}, and is dropped when a WhatsApp app is
+ * installed, updated or removed, or when the user went through the add pack flow.
+ */
+final class WhitelistStatusService {
+    private static final long STATUS_TTL_MS = 10 * 60 * 1000;
+    private static final WhitelistStatusService INSTANCE = new WhitelistStatusService();
+
+    static final class Status {
+        final boolean consumerAppInstalled;
+        final boolean smbAppInstalled;
+        //true if the app is not installed, as it does not need the pack then.
+        final boolean whitelistedInConsumerApp;
+        final boolean whitelistedInSmbApp;
+        private final long resolvedAtMs;
+
+        Status(boolean consumerAppInstalled, boolean smbAppInstalled, boolean whitelistedInConsumerApp, boolean whitelistedInSmbApp) {
+            this.consumerAppInstalled = consumerAppInstalled;
+            this.smbAppInstalled = smbAppInstalled;
+            this.whitelistedInConsumerApp = whitelistedInConsumerApp;
+            this.whitelistedInSmbApp = whitelistedInSmbApp;
+            this.resolvedAtMs = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * @return true if at least one WhatsApp app is installed and the pack is added to all the installed ones, same
+         * as {@link WhitelistCheck#isWhitelisted}.
+         */
+        boolean isWhitelisted() {
+            return (consumerAppInstalled || smbAppInstalled) && whitelistedInConsumerApp && whitelistedInSmbApp;
+        }
+    }
+
+    private final Map<String, Status> statuses = new HashMap<>();
+    //incremented on every invalidation, so a lookup that raced with one is not cached.
+    private long generation;
+    private boolean packageReceiverRegistered;
+
+    @NonNull
+    static WhitelistStatusService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Listens for WhatsApp installs, updates and removals for the life of the process.
+     */
+    synchronized void registerPackageReceiver(@NonNull Context context) {
+        if (packageReceiverRegistered) {
+            return;
+        }
+        final IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        intentFilter.addDataScheme("package");
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                final Uri data = intent.getData();
+                final String packageName = data == null ? null : data.getSchemeSpecificPart();
+                if (WhitelistCheck.CONSUMER_WHATSAPP_PACKAGE_NAME.equals(packageName) || WhitelistCheck.SMB_WHATSAPP_PACKAGE_NAME.equals(packageName)) {
+                    invalidateAll();
+                }
+            }
+        }, intentFilter);
+        packageReceiverRegistered = true;
+    }
+
+    /**
+     * @return the cached status of the pack, or null if it is unknown or expired.
+     */
+    @Nullable
+    synchronized Status getCachedStatus(@NonNull String identifier) {
+        final Status status = statuses.get(identifier);
+        if (status == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - status.resolvedAtMs > STATUS_TTL_MS) {
+            statuses.remove(identifier);
+            return null;
+        }
+        return status;
+    }
+
+    /**
+     * @return the cached status of the pack, or queries WhatsApp for it.
+     */
+    @WorkerThread
+    @NonNull
+    Status getStatus(@NonNull Context context, @NonNull String identifier) {
+        final Status cachedStatus = getCachedStatus(identifier);
+        if (cachedStatus != null) {
+            return cachedStatus;
+        }
+        final long lookupGeneration;
+        synchronized (this) {
+            lookupGeneration = generation;
+        }
+        final Status status = WhitelistCheck.getWhitelistStatus(context, identifier);
+        synchronized (this) {
+            if (lookupGeneration == generation) {
+                statuses.put(identifier, status);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @return the cached statuses of the packs, and the ones {@link WhitelistResolver} could query from WhatsApp
+     * before its deadline. Packs that could not be resolved in time are left out, and are not cached.
+     */
+    @WorkerThread
+    @NonNull
+    Map<String, Status> getStatuses(@NonNull Context context, @NonNull List<String> identifiers) {
+        final Map<String, Status> result = new HashMap<>();
+        final List<String> missingIdentifiers = new ArrayList<>();
+        final long lookupGeneration;
+        synchronized (this) {
+            lookupGeneration = generation;
+            for (String identifier : identifiers) {
+                final Status cachedStatus = getCachedStatus(identifier);
+                if (cachedStatus != null) {
+                    result.put(identifier, cachedStatus);
+                } else {
+                    missingIdentifiers.add(identifier);
+                }
+            }
+        }
+        if (missingIdentifiers.isEmpty()) {
+            return result;
+        }
+        final Map<String, Status> resolvedStatuses;
+        try {
+            resolvedStatuses = WhitelistResolver.resolve(context, missingIdentifiers, WhitelistResolver.DEFAULT_DEADLINE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result;
+        }
+        synchronized (this) {
+            if (lookupGeneration == generation) {
+                statuses.putAll(resolvedStatuses);
+            }
+        }
+        result.putAll(resolvedStatuses);
+        return result;
+    }
+
+    synchronized void invalidate(@NonNull String identifier) {
+        generation++;
+        statuses.remove(identifier);
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        statuses.clear();
+    }
+}
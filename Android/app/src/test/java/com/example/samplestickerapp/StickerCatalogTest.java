@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.samplestickerapp.StickerPackFixtures.newSticker;
+import static com.example.samplestickerapp.StickerPackFixtures.newStickerPack;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StickerCatalogTest {
+
+    @Test
+    public void looksUpPacksByIdentifier() {
+        final StickerPack first = newStickerPack("1", smile(), lol());
+        final StickerPack second = newStickerPack("2", smile());
+        final StickerCatalog catalog = StickerCatalog.fromStickerPacks(Arrays.asList(first, second));
+
+        assertSame(first, catalog.getStickerPack("1"));
+        assertSame(second, catalog.getStickerPack("2"));
+        assertEquals(Arrays.asList(first, second), catalog.getStickerPackList());
+        assertSame(first.getStickers(), catalog.getStickers("1"));
+    }
+
+    @Test
+    public void unknownPackHasNoAssets() {
+        final StickerCatalog catalog = StickerCatalog.fromStickerPacks(Collections.singletonList(newStickerPack("1", smile())));
+
+        assertNull(catalog.getStickerPack("2"));
+        assertTrue(catalog.getStickers("2").isEmpty());
+        assertEquals(0, catalog.getJoinedEmojis("2").length);
+        assertFalse(catalog.containsAsset("2", "01_Cuppy_smile.webp"));
+        assertNull(catalog.getSticker("2", "01_Cuppy_smile.webp"));
+    }
+
+    @Test
+    public void findsTrayImageAndStickersOfPack() {
+        final StickerPack stickerPack = newStickerPack("1", smile(), lol());
+        final StickerCatalog catalog = StickerCatalog.fromStickerPacks(Collections.singletonList(stickerPack));
+
+        assertTrue(catalog.containsAsset("1", StickerPackFixtures.TRAY_IMAGE_FILE));
+        assertTrue(catalog.isTrayImage("1", StickerPackFixtures.TRAY_IMAGE_FILE));
+        assertTrue(catalog.containsAsset("1", "02_Cuppy_lol.webp"));
+        assertFalse(catalog.isTrayImage("1", "02_Cuppy_lol.webp"));
+        assertSame(stickerPack.getStickers().get(1), catalog.getSticker("1", "02_Cuppy_lol.webp"));
+        assertFalse(catalog.containsAsset("1", "03_Cuppy_rofl.webp"));
+        assertNull(catalog.getSticker("1", StickerPackFixtures.TRAY_IMAGE_FILE));
+    }
+
+    @Test
+    public void keepsFirstPackOfDuplicateIdentifier() {
+        final StickerPack first = newStickerPack("1", smile());
+        final StickerPack duplicate = newStickerPack("1", "tray_Cuppy_2.png", "1", lol());
+        final StickerCatalog catalog = StickerCatalog.fromStickerPacks(Arrays.asList(first, duplicate));
+
+        assertSame(first, catalog.getStickerPack("1"));
+        assertFalse(catalog.containsAsset("1", "02_Cuppy_lol.webp"));
+        assertEquals(2, catalog.getStickerPackList().size());
+    }
+
+    @Test
+    public void readsPacksFromSourceOnceWhenLookedUp() {
+        final CountingSource source = new CountingSource(Arrays.asList(newStickerPack("1", smile()), newStickerPack("2", smile())));
+        final StickerCatalog catalog = StickerCatalog.fromSource(source);
+        assertEquals(0, source.readCounts[0]);
+        assertEquals(0, source.readCounts[1]);
+        assertEquals(0, source.indexOfCount);
+
+        catalog.getStickerPack("2");
+        catalog.containsAsset("2", StickerPackFixtures.TRAY_IMAGE_FILE);
+        catalog.getStickerPackList().get(1);
+
+        assertEquals(0, source.readCounts[0]);
+        assertEquals(1, source.readCounts[1]);
+    }
+
+    private static Sticker smile() {
+        return newSticker("01_Cuppy_smile.webp", 1024, null, "\u2615", "\uD83D\uDE42");
+    }
+
+    private static Sticker lol() {
+        return newSticker("02_Cuppy_lol.webp", 2048, "Cuppy laughing", "\uD83D\uDE02");
+    }
+
+    private static final class CountingSource implements StickerCatalog.Source {
+        private final List<StickerPack> stickerPackList;
+        final int[] readCounts;
+        int indexOfCount;
+
+        CountingSource(@NonNull List<StickerPack> stickerPackList) {
+            this.stickerPackList = stickerPackList;
+            this.readCounts = new int[stickerPackList.size()];
+        }
+
+        @Override
+        public int getPackCount() {
+            return stickerPackList.size();
+        }
+
+        @Override
+        public int indexOf(@NonNull String identifier) {
+            indexOfCount++;
+            for (int i = 0; i < stickerPackList.size(); i++) {
+                if (stickerPackList.get(i).identifier.equals(identifier)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @NonNull
+        @Override
+        public StickerPack readStickerPack(int index) {
+            readCounts[index]++;
+            return stickerPackList.get(index);
+        }
+    }
+}
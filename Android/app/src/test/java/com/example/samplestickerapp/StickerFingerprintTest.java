@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StickerFingerprintTest {
+
+    @Test
+    public void coversBytesInTheMiddleOfTheFile() {
+        //an animated sticker retimed in place only changes the ANMF frame headers after the first frames.
+        final byte[] sticker = newFile(3 * StickerAssetBufferPool.SMALL_BUFFER_SIZE);
+        final StickerFingerprint fingerprint = StickerFingerprint.compute(ByteBuffer.wrap(sticker));
+        sticker[sticker.length / 2]++;
+
+        assertNotEquals(fingerprint, StickerFingerprint.compute(ByteBuffer.wrap(sticker)));
+    }
+
+    @Test
+    public void directBufferHasSameFingerprintAsHeapBuffer() {
+        final byte[] sticker = newFile(StickerAssetBufferPool.SMALL_BUFFER_SIZE + 17);
+        final ByteBuffer directBuffer = ByteBuffer.allocateDirect(sticker.length);
+        directBuffer.put(sticker);
+        directBuffer.flip();
+
+        final StickerFingerprint fingerprint = StickerFingerprint.compute(directBuffer);
+
+        assertEquals(StickerFingerprint.compute(ByteBuffer.wrap(sticker)), fingerprint);
+        assertEquals(sticker.length, fingerprint.size);
+    }
+
+    @Test
+    public void hashesFromBufferPositionWithoutMovingIt() {
+        final byte[] sticker = newFile(1024);
+        final ByteBuffer buffer = ByteBuffer.allocate(sticker.length + 3);
+        buffer.position(3);
+        buffer.put(sticker);
+        buffer.position(3);
+
+        final StickerFingerprint fingerprint = StickerFingerprint.compute(buffer);
+
+        assertEquals(StickerFingerprint.compute(ByteBuffer.wrap(sticker)), fingerprint);
+        assertEquals(3, buffer.position());
+    }
+
+    @NonNull
+    private static byte[] newFile(int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds the sticker packs and stickers used by the unit tests.
+ */
+final class StickerPackFixtures {
+    static final String TRAY_IMAGE_FILE = "tray_Cuppy.png";
+    static final String ANDROID_PLAY_STORE_LINK = "https://play.google.com/store/apps/details?id=com.example.samplestickerapp";
+
+    private StickerPackFixtures() {
+    }
+
+    @NonNull
+    static StickerPack newStickerPack(@NonNull String identifier, @NonNull Sticker... stickers) {
+        return newStickerPack(identifier, TRAY_IMAGE_FILE, "1", stickers);
+    }
+
+    @NonNull
+    static StickerPack newStickerPack(@NonNull String identifier, @NonNull String trayImageFile, @NonNull String imageDataVersion, @NonNull Sticker... stickers) {
+        final StickerPack stickerPack = new StickerPack(identifier, "Cuppy", "Jane Doe", trayImageFile, null, "", "", "", imageDataVersion, false, false);
+        stickerPack.setAndroidPlayStoreLink(ANDROID_PLAY_STORE_LINK);
+        stickerPack.setStickers(new ArrayList<>(Arrays.asList(stickers)));
+        return stickerPack;
+    }
+
+    @NonNull
+    static Sticker newSticker(@NonNull String imageFileName, long size, @Nullable String accessibilityText, @NonNull String... emojis) {
+        final Sticker sticker = new Sticker(imageFileName, new ArrayList<>(Arrays.asList(emojis)), accessibilityText);
+        sticker.setSize(size);
+        return sticker;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The callbacks are posted to the main looper, which the JVM tests do not have, so the jobs report what they see
+ * themselves.
+ */
+public class TaskSchedulerTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final TaskScheduler taskScheduler = TaskScheduler.getInstance();
+
+    @Test
+    public void runsJobsWithSameKeyOnce() throws InterruptedException {
+        final BlockingJob job = new BlockingJob();
+        taskScheduler.submit(TaskScheduler.Lane.IPC, "dedup", job, null);
+        assertTrue(job.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        taskScheduler.submit(TaskScheduler.Lane.IPC, "dedup", job, null);
+        job.release.countDown();
+        assertTrue(job.finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(1, job.runCount.get());
+    }
+
+    @Test
+    public void runsJobsWithoutKeyEveryTime() throws InterruptedException {
+        final CountDownLatch finished = new CountDownLatch(2);
+        final TaskScheduler.Job<Void> job = cancellationToken -> {
+            finished.countDown();
+            return null;
+        };
+        taskScheduler.submit(TaskScheduler.Lane.IPC, null, job, null);
+        taskScheduler.submit(TaskScheduler.Lane.IPC, null, job, null);
+
+        assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void keepsJobRunningWhileAHandleWaitsForIt() throws InterruptedException {
+        final BlockingJob job = new BlockingJob();
+        final TaskScheduler.Handle<Void> firstHandle = taskScheduler.submit(TaskScheduler.Lane.IPC, "shared", job, null);
+        assertTrue(job.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final TaskScheduler.Handle<Void> secondHandle = taskScheduler.submit(TaskScheduler.Lane.IPC, "shared", job, null);
+
+        firstHandle.cancel();
+        job.release.countDown();
+        assertTrue(job.finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertFalse(job.cancelledWhenReleased);
+        secondHandle.cancel();
+    }
+
+    @Test
+    public void cancelsJobWhenAllHandlesAreCancelled() throws InterruptedException {
+        final BlockingJob job = new BlockingJob();
+        final TaskScheduler.Handle<Void> firstHandle = taskScheduler.submit(TaskScheduler.Lane.IPC, "cancelled", job, null);
+        assertTrue(job.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final TaskScheduler.Handle<Void> secondHandle = taskScheduler.submit(TaskScheduler.Lane.IPC, "cancelled", job, null);
+
+        firstHandle.cancel();
+        secondHandle.cancel();
+        job.release.countDown();
+        assertTrue(job.finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(job.cancelledWhenReleased);
+    }
+
+    @Test
+    public void runsJobAgainOnceKeyIsCancelled() throws InterruptedException {
+        final BlockingJob cancelledJob = new BlockingJob();
+        final TaskScheduler.Handle<Void> handle = taskScheduler.submit(TaskScheduler.Lane.IPC, "resubmitted", cancelledJob, null);
+        assertTrue(cancelledJob.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        handle.cancel();
+
+        final BlockingJob job = new BlockingJob();
+        job.release.countDown();
+        taskScheduler.submit(TaskScheduler.Lane.IPC, "resubmitted", job, null);
+        cancelledJob.release.countDown();
+
+        assertTrue(job.finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, job.runCount.get());
+    }
+
+    private static final class BlockingJob implements TaskScheduler.Job<Void> {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicInteger runCount = new AtomicInteger();
+        volatile boolean cancelledWhenReleased;
+
+        @Override
+        public Void run(TaskScheduler.CancellationToken cancellationToken) throws InterruptedException {
+            runCount.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                cancelledWhenReleased = cancellationToken.isCancelled();
+            } finally {
+                finished.countDown();
+            }
+            return null;
+        }
+    }
+}
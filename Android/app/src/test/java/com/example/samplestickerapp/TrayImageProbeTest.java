@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrayImageProbeTest {
+
+    @Test
+    public void readsSizeFromPngHeader() {
+        final TrayImageProbe.Size size = TrayImageProbe.probe(ByteBuffer.wrap(pngHeader(96, 72)));
+
+        assertEquals(96, size.width);
+        assertEquals(72, size.height);
+    }
+
+    @Test
+    public void probesFromBufferPositionWithoutMovingIt() {
+        final byte[] png = pngHeader(512, 24);
+        final ByteBuffer buffer = ByteBuffer.allocate(png.length + 5);
+        buffer.position(5);
+        buffer.put(png);
+        buffer.position(5);
+
+        final TrayImageProbe.Size size = TrayImageProbe.probe(buffer);
+
+        assertEquals(512, size.width);
+        assertEquals(24, size.height);
+        assertEquals(5, buffer.position());
+    }
+
+    /**
+     * @return the signature and IHDR chunk of a PNG file, without the image data.
+     */
+    @NonNull
+    private static byte[] pngHeader(int width, int height) {
+        final ByteBuffer buffer = ByteBuffer.allocate(33);
+        buffer.put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+        buffer.putInt(13);
+        buffer.put(new byte[]{'I', 'H', 'D', 'R'});
+        buffer.putInt(width);
+        buffer.putInt(height);
+        //bit depth, color type, compression, filter and interlace methods, then the CRC.
+        buffer.put(new byte[]{8, 6, 0, 0, 0});
+        buffer.putInt(0);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import android.content.ContentResolver;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.samplestickerapp.StickerPackFixtures.newSticker;
+import static com.example.samplestickerapp.StickerPackFixtures.newStickerPack;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ValidatedStickerPackCacheTest {
+    private static final long APP_LAST_UPDATE_TIME = 1000;
+    private static final long UPDATED_APP_LAST_UPDATE_TIME = 2000;
+    private static final StickerFingerprint SMILE_FINGERPRINT = new StickerFingerprint(1024, 0x1234);
+    private static final StickerFingerprint LOL_FINGERPRINT = new StickerFingerprint(2048, 0x2345);
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheFile;
+    //the tests give the fingerprints, so the resolver is never queried.
+    private final ContentResolver contentResolver = new ContentResolver(null) {
+    };
+
+    @Before
+    public void setUp() {
+        cacheFile = new File(temporaryFolder.getRoot(), "validated_sticker_packs");
+    }
+
+    @Test
+    public void emptyWhenFileIsMissing() {
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+
+        assertNull(cache.getStickerPacksIfAppNotUpdated());
+        assertFalse(cache.isValidated(cuppyStickerPack("1", "1")));
+    }
+
+    @Test
+    public void returnsSavedPacksWhenAppNotUpdated() {
+        final StickerPack stickerPack = cuppyStickerPack("1", "1");
+        ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver).save(Arrays.asList(stickerPack, cuppyStickerPack("2", "1")));
+
+        final List<StickerPack> cachedStickerPacks = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver).getStickerPacksIfAppNotUpdated();
+
+        assertNotNull(cachedStickerPacks);
+        assertEquals(2, cachedStickerPacks.size());
+        final StickerPack cachedStickerPack = cachedStickerPacks.get(0);
+        assertEquals("1", cachedStickerPack.identifier);
+        assertEquals("2", cachedStickerPacks.get(1).identifier);
+        assertEquals(stickerPack.name, cachedStickerPack.name);
+        assertEquals(stickerPack.trayImageFile, cachedStickerPack.trayImageFile);
+        assertNull(cachedStickerPack.publisherEmail);
+        assertEquals(stickerPack.androidPlayStoreLink, cachedStickerPack.androidPlayStoreLink);
+        assertEquals(stickerPack.animatedStickerPack, cachedStickerPack.animatedStickerPack);
+        assertTrue(cachedStickerPack.isValid());
+        final Sticker cachedSticker = cachedStickerPack.getStickers().get(1);
+        assertEquals("02_Cuppy_lol.webp", cachedSticker.imageFileName);
+        assertEquals(Arrays.asList("\uD83D\uDE02", "\uD83E\uDD23"), cachedSticker.emojis);
+        assertEquals("Cuppy laughing", cachedSticker.accessibilityText);
+        assertEquals(2048, cachedSticker.size);
+    }
+
+    @Test
+    public void revalidatesOnlyChangedPacksAfterAppUpdate() {
+        ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver).save(Arrays.asList(cuppyStickerPack("1", "1"), cuppyStickerPack("2", "1"), cuppyStickerPack("3", "1")));
+
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, UPDATED_APP_LAST_UPDATE_TIME, contentResolver);
+        final StickerPack resizedStickerPack = cuppyStickerPack("3", "1");
+        resizedStickerPack.getStickers().get(0).setSize(4096);
+
+        assertNull(cache.getStickerPacksIfAppNotUpdated());
+        assertTrue(cache.isValidated(cuppyStickerPack("1", "1")));
+        assertFalse(cache.isValidated(cuppyStickerPack("2", "2")));
+        assertFalse(cache.isValidated(resizedStickerPack));
+        assertFalse(cache.isValidated(cuppyStickerPack("4", "1")));
+    }
+
+    @Test
+    public void skipsStickerFilesWithUnchangedFingerprint() {
+        final StickerPack stickerPack = cuppyStickerPack("1", "1");
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+        assertFalse(cache.isFileValidated(stickerPack, stickerPack.getStickers().get(0), SMILE_FINGERPRINT));
+        assertFalse(cache.isFileValidated(stickerPack, stickerPack.getStickers().get(1), LOL_FINGERPRINT));
+        cache.save(Collections.singletonList(stickerPack));
+
+        //a new image data version validates the pack again, but only the retimed sticker is checked.
+        final StickerPack updatedStickerPack = cuppyStickerPack("1", "2");
+        final ValidatedStickerPackCache updatedCache = ValidatedStickerPackCache.load(cacheFile, UPDATED_APP_LAST_UPDATE_TIME, contentResolver);
+        assertFalse(updatedCache.isValidated(updatedStickerPack));
+        assertTrue(updatedCache.isFileValidated(updatedStickerPack, updatedStickerPack.getStickers().get(0), SMILE_FINGERPRINT));
+        assertFalse(updatedCache.isFileValidated(updatedStickerPack, updatedStickerPack.getStickers().get(1), new StickerFingerprint(LOL_FINGERPRINT.size, 0x5678)));
+
+        assertEquals(1, updatedCache.getSkippedStickerCount());
+        assertEquals(1, updatedCache.getCheckedStickerCount());
+    }
+
+    @Test
+    public void keepsStickerVerdictsOfPacksNotValidatedAgain() {
+        final StickerPack stickerPack = cuppyStickerPack("1", "1");
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+        cache.isFileValidated(stickerPack, stickerPack.getStickers().get(0), SMILE_FINGERPRINT);
+        cache.save(Collections.singletonList(stickerPack));
+        ValidatedStickerPackCache.load(cacheFile, UPDATED_APP_LAST_UPDATE_TIME, contentResolver).save(Collections.singletonList(cuppyStickerPack("1", "1")));
+
+        final StickerPack updatedStickerPack = cuppyStickerPack("1", "2");
+        final ValidatedStickerPackCache updatedCache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+
+        assertTrue(updatedCache.isFileValidated(updatedStickerPack, updatedStickerPack.getStickers().get(0), SMILE_FINGERPRINT));
+    }
+
+    @Test
+    public void checksStickerFileAgainWhenPackTypeChanges() {
+        final StickerPack stickerPack = cuppyStickerPack("1", "1");
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+        cache.isFileValidated(stickerPack, stickerPack.getStickers().get(0), SMILE_FINGERPRINT);
+        cache.save(Collections.singletonList(stickerPack));
+
+        final StickerPack animatedStickerPack = new StickerPack("1", "Cuppy", "Jane Doe", StickerPackFixtures.TRAY_IMAGE_FILE, null, "", "", "", "2", false, true);
+        animatedStickerPack.setStickers(stickerPack.getStickers());
+        final ValidatedStickerPackCache updatedCache = ValidatedStickerPackCache.load(cacheFile, UPDATED_APP_LAST_UPDATE_TIME, contentResolver);
+
+        assertFalse(updatedCache.isFileValidated(animatedStickerPack, animatedStickerPack.getStickers().get(0), SMILE_FINGERPRINT));
+    }
+
+    @Test
+    public void cachesValidPacksWhenAnotherPackIsInvalid() {
+        ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver).save(Arrays.asList(cuppyStickerPack("1", "1"), invalidStickerPack("2"), cuppyStickerPack("3", "1")));
+
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+
+        //the list is fetched again so that the invalid pack is still listed, but only that pack is validated.
+        assertNull(cache.getStickerPacksIfAppNotUpdated());
+        assertTrue(cache.isValidated(cuppyStickerPack("1", "1")));
+        assertFalse(cache.isValidated(cuppyStickerPack("2", "1")));
+        assertTrue(cache.isValidated(cuppyStickerPack("3", "1")));
+    }
+
+    @Test
+    public void saveReplacesCachedPacks() {
+        ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver).save(Arrays.asList(cuppyStickerPack("1", "1"), cuppyStickerPack("2", "1")));
+        ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver).save(Collections.singletonList(cuppyStickerPack("2", "1")));
+
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+
+        final List<StickerPack> cachedStickerPacks = cache.getStickerPacksIfAppNotUpdated();
+        assertNotNull(cachedStickerPacks);
+        assertEquals(1, cachedStickerPacks.size());
+        assertEquals("2", cachedStickerPacks.get(0).identifier);
+        assertFalse(cache.isValidated(cuppyStickerPack("1", "1")));
+    }
+
+    @Test
+    public void ignoresUnreadableFile() throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(cacheFile)) {
+            outputStream.write(new byte[]{0x57, 0x53, 0x56, 0x50, 0, 0, 0, 1, 0});
+        }
+
+        final ValidatedStickerPackCache cache = ValidatedStickerPackCache.load(cacheFile, APP_LAST_UPDATE_TIME, contentResolver);
+
+        assertNull(cache.getStickerPacksIfAppNotUpdated());
+        assertFalse(cache.isValidated(cuppyStickerPack("1", "1")));
+    }
+
+    @NonNull
+    private static StickerPack cuppyStickerPack(@NonNull String identifier, @NonNull String imageDataVersion) {
+        final StickerPack stickerPack = newStickerPack(identifier, StickerPackFixtures.TRAY_IMAGE_FILE, imageDataVersion,
+                newSticker("01_Cuppy_smile.webp", 1024, null, "\u2615"),
+                newSticker("02_Cuppy_lol.webp", 2048, "Cuppy laughing", "\uD83D\uDE02", "\uD83E\uDD23"));
+        stickerPack.setValidationResult(null);
+        return stickerPack;
+    }
+
+    @NonNull
+    private static StickerPack invalidStickerPack(@NonNull String identifier) {
+        final StickerPack stickerPack = cuppyStickerPack(identifier, "1");
+        stickerPack.setValidationResult("sticker height should be 512");
+        return stickerPack;
+    }
+}
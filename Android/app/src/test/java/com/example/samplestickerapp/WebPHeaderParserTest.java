@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.example.samplestickerapp;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WebPHeaderParserTest {
+    private static final int VP8X_ANIMATION_FLAG = 0x02;
+
+    @Test
+    public void parsesLossyImage() {
+        final WebPHeaderParser.Info info = parse(riff(chunk("VP8 ", vp8Header(512, 512))));
+
+        assertEquals(512, info.width);
+        assertEquals(512, info.height);
+        assertEquals(1, info.getFrameCount());
+        assertEquals(0, info.getDuration());
+    }
+
+    @Test
+    public void parsesLosslessImage() {
+        final WebPHeaderParser.Info info = parse(riff(chunk("VP8L", vp8lHeader(96, 512))));
+
+        assertEquals(96, info.width);
+        assertEquals(512, info.height);
+        assertEquals(1, info.getFrameCount());
+    }
+
+    @Test
+    public void parsesExtendedStaticImageFromCanvas() {
+        final WebPHeaderParser.Info info = parse(riff(chunk("VP8X", vp8xHeader(0, 512, 300)), chunk("VP8L", vp8lHeader(1, 1))));
+
+        assertEquals(512, info.width);
+        assertEquals(300, info.height);
+        assertEquals(1, info.getFrameCount());
+    }
+
+    @Test
+    public void readsFrameDurationsOfAnimation() {
+        //the odd sized EXIF chunk checks that chunk padding is skipped.
+        final WebPHeaderParser.Info info = parse(riff(
+                chunk("VP8X", vp8xHeader(VP8X_ANIMATION_FLAG, 512, 512)),
+                chunk("ANIM", new byte[6]),
+                chunk("EXIF", new byte[3]),
+                chunk("ANMF", anmfHeader(100)),
+                chunk("ANMF", anmfHeader(50)),
+                chunk("ANMF", anmfHeader(8))));
+
+        assertEquals(512, info.width);
+        assertEquals(512, info.height);
+        assertArrayEquals(new int[]{100, 50, 8}, info.frameDurations);
+        assertEquals(158, info.getDuration());
+    }
+
+    @Test
+    public void readsAllFramesOfLongAnimation() {
+        final byte[][] chunks = new byte[21][];
+        chunks[0] = chunk("VP8X", vp8xHeader(VP8X_ANIMATION_FLAG, 512, 512));
+        final int[] durations = new int[20];
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = 10 + i;
+            chunks[i + 1] = chunk("ANMF", anmfHeader(durations[i]));
+        }
+
+        assertArrayEquals(durations, parse(riff(chunks)).frameDurations);
+    }
+
+    @Test
+    public void parsesFromBufferPositionWithoutMovingIt() {
+        final byte[] webp = riff(chunk("VP8 ", vp8Header(320, 240)));
+        final ByteBuffer buffer = ByteBuffer.allocate(webp.length + 7);
+        buffer.position(7);
+        buffer.put(webp);
+        buffer.position(7);
+
+        final WebPHeaderParser.Info info = WebPHeaderParser.parse(buffer);
+
+        assertEquals(320, info.width);
+        assertEquals(240, info.height);
+        assertEquals(7, buffer.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFileThatIsNotWebP() {
+        parse("RIFF\0\0\0\0WAVEfmt ".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedAnimation() {
+        final byte[] webp = riff(chunk("VP8X", vp8xHeader(VP8X_ANIMATION_FLAG, 512, 512)), chunk("ANMF", anmfHeader(100)));
+        parse(Arrays.copyOf(webp, webp.length - 20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnimationFrameWithoutVp8x() {
+        parse(riff(chunk("ANMF", anmfHeader(100))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidVp8StartCode() {
+        final byte[] vp8Header = vp8Header(512, 512);
+        vp8Header[3] = 0;
+        parse(riff(chunk("VP8 ", vp8Header)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooSmallVp8xChunk() {
+        parse(riff(chunk("VP8X", new byte[4])));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFileWithoutImageData() {
+        parse(riff(chunk("EXIF", new byte[4])));
+    }
+
+    @NonNull
+    private static WebPHeaderParser.Info parse(@NonNull byte[] webp) {
+        return WebPHeaderParser.parse(ByteBuffer.wrap(webp));
+    }
+
+    @NonNull
+    private static byte[] riff(@NonNull byte[]... chunks) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int size = 4;
+        for (byte[] chunk : chunks) {
+            size += chunk.length;
+        }
+        writeFourCC(outputStream, "RIFF");
+        writeUInt(outputStream, size, 4);
+        writeFourCC(outputStream, "WEBP");
+        for (byte[] chunk : chunks) {
+            outputStream.write(chunk, 0, chunk.length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] chunk(@NonNull String fourCC, @NonNull byte[] payload) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeFourCC(outputStream, fourCC);
+        writeUInt(outputStream, payload.length, 4);
+        outputStream.write(payload, 0, payload.length);
+        if (payload.length % 2 == 1) {
+            outputStream.write(0);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] vp8Header(int width, int height) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        //frame tag, then the start code of a key frame.
+        writeUInt(outputStream, 0, 3);
+        outputStream.write(0x9d);
+        outputStream.write(0x01);
+        outputStream.write(0x2a);
+        writeUInt(outputStream, width, 2);
+        writeUInt(outputStream, height, 2);
+        return outputStream.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] vp8lHeader(int width, int height) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.write(0x2f);
+        writeUInt(outputStream, (width - 1) | (height - 1) << 14, 4);
+        return outputStream.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] vp8xHeader(int flags, int canvasWidth, int canvasHeight) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeUInt(outputStream, flags, 4);
+        writeUInt(outputStream, canvasWidth - 1, 3);
+        writeUInt(outputStream, canvasHeight - 1, 3);
+        return outputStream.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] anmfHeader(int duration) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        //frame x and y, width and height minus one.
+        writeUInt(outputStream, 0, 3);
+        writeUInt(outputStream, 0, 3);
+        writeUInt(outputStream, 511, 3);
+        writeUInt(outputStream, 511, 3);
+        writeUInt(outputStream, duration, 3);
+        outputStream.write(0);
+        final byte[] frameData = chunk("VP8L", vp8lHeader(512, 512));
+        outputStream.write(frameData, 0, frameData.length);
+        return outputStream.toByteArray();
+    }
+
+    private static void writeFourCC(@NonNull ByteArrayOutputStream outputStream, @NonNull String fourCC) {
+        final byte[] bytes = fourCC.getBytes(StandardCharsets.US_ASCII);
+        outputStream.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeUInt(@NonNull ByteArrayOutputStream outputStream, int value, int byteCount) {
+        for (int i = 0; i < byteCount; i++) {
+            outputStream.write(value >> (8 * i) & 0xff);
+        }
+    }
+}